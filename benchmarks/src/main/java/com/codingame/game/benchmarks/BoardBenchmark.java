@@ -0,0 +1,102 @@
+package com.codingame.game.benchmarks;
+
+import com.codingame.game.BandasBoard;
+import com.codingame.game.BandasState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BandasBoard, the referee's rules engine for boards other than 8x8. The 8x8 case
+ * compares it with BandasState in RulesBenchmark and GameBenchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+    private static final int TURNS = 20;
+
+    @Param({"8", "32", "128"})
+    private int size;
+
+    private BandasBoard[] boards;
+    private BandasBoard work;
+    private final int[][] moves = new int[Boards.BOARD_COUNT][BandasState.MAX_TURNS];
+    private int index;
+    // Input lines of the previous turn
+    private String[] lines;
+
+    @Setup
+    public void setup() {
+        boards = Boards.midGame(42, TURNS, size);
+        work = new BandasBoard(size, size);
+        lines = new String[size];
+        Random rng = new Random(42);
+        for(int[] gameMoves : moves) {
+            for(int turn=0; turn<BandasState.MAX_TURNS; turn++) {
+                gameMoves[turn] = rng.nextInt(4);
+            }
+        }
+    }
+
+    private BandasBoard nextBoard() {
+        index = (index + 1) & (Boards.BOARD_COUNT - 1);
+        work.copyFrom(boards[index]);
+        return work;
+    }
+
+    @Benchmark
+    public BandasBoard move() {
+        BandasBoard board = nextBoard();
+        board.move(index & 1, (index >>> 1) & 3);
+        return board;
+    }
+
+    @Benchmark
+    public boolean moveAndTrimEdges() {
+        BandasBoard board = nextBoard();
+        board.move(index & 1, (index >>> 1) & 3);
+        return board.trimEdges();
+    }
+
+    /**
+     * One game played until it ends, as in GameBenchmark, the input lines going through the line cache.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int gameToCompletion() {
+        index = (index + 1) & (Boards.BOARD_COUNT - 1);
+        BandasBoard board = BandasBoard.fromSeed(size, size, index);
+        int[] gameMoves = moves[index];
+        int length = 0;
+        for(int turn=0; turn<BandasState.MAX_TURNS; turn++) {
+            for(int i=0; i<size; i++) {
+                if(board.isLineChanged(i)) {
+                    lines[i] = board.line(i);
+                }
+                length += lines[i].length();
+            }
+            board.clearChanges();
+            board.move(turn % 2, gameMoves[turn]);
+            if(board.countPawns(0) == 0 || board.countPawns(1) == 0) {
+                break;
+            }
+            board.trimEdges();
+        }
+        return length + board.countPawns(0) - board.countPawns(1);
+    }
+}
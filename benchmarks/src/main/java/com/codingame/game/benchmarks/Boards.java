@@ -0,0 +1,92 @@
+package com.codingame.game.benchmarks;
+
+import com.codingame.game.BandasBoard;
+import com.codingame.game.BandasState;
+
+import java.util.Random;
+
+/**
+ * Realistic boards for the benchmarks: starting positions played for a number
+ * of random turns, stopping early when the next move would end the game.
+ */
+final class Boards {
+    static final int BOARD_COUNT = 64;
+
+    private Boards() {
+    }
+
+    static BandasState[] midGame(long seed, int turns) {
+        Random rng = new Random(seed);
+        BandasState[] boards = new BandasState[BOARD_COUNT];
+        BandasState previous = new BandasState();
+        for(int i=0; i<BOARD_COUNT; i++) {
+            BandasState state = BandasState.fromSeed(rng.nextLong());
+            for(int turn=0; turn<turns; turn++) {
+                previous.copyFrom(state);
+                state.move(turn % 2, rng.nextInt(4));
+                if (isOver(state)) {
+                    state.copyFrom(previous);
+                    break;
+                }
+                state.trimEdges();
+            }
+            boards[i] = state;
+        }
+        return boards;
+    }
+
+    /**
+     * Each board after a move that does not end the game, before trimming its edges,
+     * preferring a move that leaves empty edges to trim.
+     */
+    static BandasState[] beforeTrim(BandasState[] boards) {
+        BandasState[] moved = new BandasState[boards.length];
+        BandasState trimmed = new BandasState();
+        for(int i=0; i<boards.length; i++) {
+            for(int direction=0; direction<4; direction++) {
+                BandasState state = new BandasState();
+                state.copyFrom(boards[i]);
+                state.move(i % 2, direction);
+                if(isOver(state)) {
+                    continue;
+                }
+                if(moved[i] == null) {
+                    moved[i] = state;
+                }
+                trimmed.copyFrom(state);
+                if(trimmed.trimEdges() != 0) {
+                    moved[i] = state;
+                    break;
+                }
+            }
+            if(moved[i] == null) {
+                moved[i] = boards[i];
+            }
+        }
+        return moved;
+    }
+
+    static BandasBoard[] midGame(long seed, int turns, int size) {
+        Random rng = new Random(seed);
+        BandasBoard[] boards = new BandasBoard[BOARD_COUNT];
+        BandasBoard previous = new BandasBoard(size, size);
+        for(int i=0; i<BOARD_COUNT; i++) {
+            BandasBoard board = BandasBoard.fromSeed(size, size, rng.nextLong());
+            for(int turn=0; turn<turns; turn++) {
+                previous.copyFrom(board);
+                board.move(turn % 2, rng.nextInt(4));
+                if (board.countPawns(0) == 0 || board.countPawns(1) == 0) {
+                    board.copyFrom(previous);
+                    break;
+                }
+                board.trimEdges();
+            }
+            boards[i] = board;
+        }
+        return boards;
+    }
+
+    static boolean isOver(BandasState state) {
+        return state.countPawns(0) == 0 || state.countPawns(1) == 0;
+    }
+}
@@ -0,0 +1,129 @@
+package com.codingame.game.benchmarks;
+
+import com.codingame.game.BandasBatch;
+import com.codingame.game.BandasState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Games as played by the referee: move, winner check, edge trimming and input
+ * serialization, with pre-drawn random moves. The input lines go through the
+ * referee's line cache, only the lines changed since the previous turn are rebuilt.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBenchmark {
+    private static final int GAMES = 64;
+
+    private final int[][] moves = new int[GAMES][BandasState.MAX_TURNS];
+    private int game;
+    // Input lines of the previous turn
+    private final String[] lines = new String[BandasState.HEIGHT];
+    private final BandasBatch batch = new BandasBatch(GAMES);
+    private final long[] seeds = new long[GAMES];
+    // Moves of each turn for all the games of the batch
+    private final byte[][] batchMoves = new byte[BandasState.MAX_TURNS][GAMES];
+
+    @Setup
+    public void setup() {
+        Random rng = new Random(42);
+        for(int[] gameMoves : moves) {
+            for(int turn=0; turn<BandasState.MAX_TURNS; turn++) {
+                gameMoves[turn] = rng.nextInt(4);
+            }
+        }
+        for(int i=0; i<GAMES; i++) {
+            seeds[i] = i;
+            for(int turn=0; turn<BandasState.MAX_TURNS; turn++) {
+                batchMoves[turn][i] = (byte) moves[i][turn];
+            }
+        }
+    }
+
+    private int sendInputs(BandasState state) {
+        long changes = state.takeChanges();
+        int length = 0;
+        for(int i=0; i<BandasState.HEIGHT; i++) {
+            if(((changes >>> (i * BandasState.WIDTH)) & 0xFF) != 0) {
+                lines[i] = state.line(i);
+            }
+            length += lines[i].length();
+        }
+        return length;
+    }
+
+    /**
+     * One game played until it ends, at the turn limit or as soon as a side has no pawn left,
+     * so the time per game depends on how long the random games last.
+     */
+    @Benchmark
+    public int gameToCompletion() {
+        game = (game + 1) & (GAMES - 1);
+        BandasState state = BandasState.fromSeed(game);
+        int[] gameMoves = moves[game];
+        int length = 0;
+        for(int turn=0; turn<BandasState.MAX_TURNS; turn++) {
+            length += sendInputs(state);
+            state.move(turn % 2, gameMoves[turn]);
+            if(Boards.isOver(state)) {
+                break;
+            }
+            state.trimEdges();
+        }
+        return length + state.countPawns(0) - state.countPawns(1);
+    }
+
+    /**
+     * Always 200 turns, the length of a game reaching the turn limit: a game which ends
+     * early is followed by the next one, until 200 turns are played.
+     */
+    @Benchmark
+    public int fixedTurns() {
+        game = (game + 1) & (GAMES - 1);
+        BandasState state = BandasState.fromSeed(game);
+        int next = game;
+        int start = 0;
+        int length = 0;
+        for(int turn=0; turn<BandasState.MAX_TURNS; turn++) {
+            length += sendInputs(state);
+            state.move((turn - start) % 2, moves[next][turn - start]);
+            if(Boards.isOver(state)) {
+                next = (next + 1) & (GAMES - 1);
+                state = BandasState.fromSeed(next);
+                start = turn + 1;
+                continue;
+            }
+            state.trimEdges();
+        }
+        return length + state.countPawns(0) - state.countPawns(1);
+    }
+
+    /**
+     * The same games without input serialization, all played at once by BandasBatch, per game.
+     */
+    @Benchmark
+    @OperationsPerInvocation(GAMES)
+    public int batchGames() {
+        batch.reset(seeds);
+        for(int turn=0; turn<BandasState.MAX_TURNS && batch.getRunning() > 0; turn++) {
+            batch.step(batchMoves[turn]);
+        }
+        return batch.getRunning();
+    }
+}
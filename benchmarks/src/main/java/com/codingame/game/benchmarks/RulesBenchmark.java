@@ -0,0 +1,142 @@
+package com.codingame.game.benchmarks;
+
+import com.codingame.game.BandasState;
+import com.codingame.game.StartingPositions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Referee hot paths, on boards taken after a number of random turns.
+ * Each benchmark restores one of the prepared boards before working on it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RulesBenchmark {
+    @Param({"0", "20", "60"})
+    private int turns;
+
+    private BandasState[] boards;
+    // The same boards right after a move, before edge trimming
+    private BandasState[] untrimmed;
+    private final BandasState work = new BandasState();
+    // Input lines of each prepared board
+    private String[][] lines;
+    private final String[] turnLines = new String[BandasState.HEIGHT];
+    private int index;
+
+    @Setup
+    public void setup() {
+        boards = Boards.midGame(42, turns);
+        untrimmed = Boards.beforeTrim(boards);
+        lines = new String[Boards.BOARD_COUNT][BandasState.HEIGHT];
+        for(int i=0; i<Boards.BOARD_COUNT; i++) {
+            for(int y=0; y<BandasState.HEIGHT; y++) {
+                lines[i][y] = boards[i].line(y);
+            }
+        }
+    }
+
+    private BandasState nextBoard() {
+        index = (index + 1) & (Boards.BOARD_COUNT - 1);
+        work.copyFrom(boards[index]);
+        return work;
+    }
+
+    @Benchmark
+    public BandasState moveUp() {
+        BandasState state = nextBoard();
+        state.move(index & 1, BandasState.UP);
+        return state;
+    }
+
+    @Benchmark
+    public BandasState moveDown() {
+        BandasState state = nextBoard();
+        state.move(index & 1, BandasState.DOWN);
+        return state;
+    }
+
+    @Benchmark
+    public BandasState moveLeft() {
+        BandasState state = nextBoard();
+        state.move(index & 1, BandasState.LEFT);
+        return state;
+    }
+
+    @Benchmark
+    public BandasState moveRight() {
+        BandasState state = nextBoard();
+        state.move(index & 1, BandasState.RIGHT);
+        return state;
+    }
+
+    @Benchmark
+    public BandasState makeUnmakeMove() {
+        // A search node without copying the board, to compare with the move benchmarks
+        BandasState state = nextBoard();
+        int record = state.makeMove(index & 1, (index >>> 1) & 3);
+        state.unmakeMove(record);
+        return state;
+    }
+
+    @Benchmark
+    public long trimEdges() {
+        // findEmptyLines and findEmptyColumns in the original referee
+        index = (index + 1) & (Boards.BOARD_COUNT - 1);
+        work.copyFrom(untrimmed[index]);
+        return work.trimEdges();
+    }
+
+    @Benchmark
+    public int countPawns() {
+        BandasState state = nextBoard();
+        return state.countPawns(0) + state.countPawns(1);
+    }
+
+    @Benchmark
+    public long[] addPawns() {
+        // Placement itself, without the cache of StartingPositions.get
+        return StartingPositions.generate(StartingPositions.Layout.COMPATIBLE, BandasState.WIDTH, BandasState.HEIGHT, index++);
+    }
+
+    @Benchmark
+    public BandasState fromSeedCached() {
+        // Starting positions of a replayed seed set, found in the cache
+        index = (index + 1) & (Boards.BOARD_COUNT - 1);
+        return BandasState.fromSeed(index);
+    }
+
+    @Benchmark
+    public void sendInputs(Blackhole blackhole) {
+        // A turn's move and trim, then the input lines as the referee builds them: only the
+        // lines changed by the turn are rebuilt, the others are the previous turn's
+        BandasState state = nextBoard();
+        state.takeChanges();
+        state.move(index & 1, (index >>> 1) & 3);
+        state.trimEdges();
+        long changes = state.takeChanges();
+        System.arraycopy(lines[index], 0, turnLines, 0, BandasState.HEIGHT);
+        for(int i=0; i<BandasState.HEIGHT; i++) {
+            if(((changes >>> (i * BandasState.WIDTH)) & 0xFF) != 0) {
+                turnLines[i] = state.line(i);
+            }
+            blackhole.consume(turnLines[i]);
+        }
+    }
+}
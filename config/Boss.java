@@ -1,15 +1,365 @@
 import java.util.Random;
 import java.util.Scanner;
 
+/**
+ * Iterative deepening alpha-beta over the Bandas rules, with incremental Zobrist
+ * hashing and a fixed-size transposition table.
+ * Boards are bitboards, bit (y * 8 + x) standing for the cell at line y, column x.
+ */
 class Player {
+    static final String[] DIRECTIONS = {"UP", "RIGHT", "DOWN", "LEFT"};
+    static final int UP = 0, RIGHT = 1, DOWN = 2, LEFT = 3;
+    static final int MAX_TURNS = 200;
+    // The referee allows 100ms per turn
+    static final long TIME_BUDGET_NANOS = 80_000_000L;
+    static final int MAX_PLY = 64;
+    static final int WIN = 1_000_000;
+    // Scores of won or lost games, WIN minus the plies to the end of the game
+    static final int WON = WIN - MAX_TURNS;
+
+    static final long FIRST_COLUMN = 0x0101010101010101L;
+    static final long LAST_COLUMN = FIRST_COLUMN << 7;
+    static final long FIRST_LINE = 0xFFL;
+
+    // Zobrist keys: one per cell for each player's pawn and for a dead tile, one for the side to move,
+    // and one per number of turns left when the turn limit is within search reach
+    static final long[][] PAWN_KEYS = new long[2][64];
+    static final long[] DEAD_KEYS = new long[64];
+    static final long SIDE_KEY;
+    static final long[] TURNS_LEFT_KEYS = new long[MAX_PLY + 1];
+    static {
+        Random rng = new Random(0x5EED);
+        for (int i = 0; i < 64; i++) {
+            PAWN_KEYS[0][i] = rng.nextLong();
+            PAWN_KEYS[1][i] = rng.nextLong();
+            DEAD_KEYS[i] = rng.nextLong();
+        }
+        SIDE_KEY = rng.nextLong();
+        for (int i = 0; i <= MAX_PLY; i++) {
+            TURNS_LEFT_KEYS[i] = rng.nextLong();
+        }
+    }
+
+    // Search stack: position at each ply, so that making a move never allocates
+    final long[][] pawns = new long[MAX_PLY + 1][2];
+    final long[] alive = new long[MAX_PLY + 1];
+    final long[] hash = new long[MAX_PLY + 1];
+
+    final TranspositionTable table = new TranspositionTable(20);
+    long deadline;
+    long nodes;
+    boolean aborted;
+    int rootTurn;
+
     public static void main(String[] args) {
         Scanner scanner = new Scanner(System.in);
-
         final int MY_ID = scanner.nextInt();
-        while (true) {
-            String[] directions = {"UP", "RIGHT", "DOWN", "LEFT"};
-            System.out.println(
-                    directions[(new Random()).nextInt(directions.length)]);
+        final int HEIGHT = scanner.nextInt();
+        final int WIDTH = scanner.nextInt();
+        Player boss = new Player();
+
+        for (int turn = MY_ID; ; turn += 2) {
+            // The clock starts once the turn's input arrives, not while the opponent plays
+            long start = 0;
+            long[] players = new long[2];
+            long live = 0;
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    String cell = scanner.next();
+                    if (y == 0 && x == 0) {
+                        start = System.nanoTime();
+                    }
+                    long bit = 1L << (y * 8 + x);
+                    if (cell.equals("0")) {
+                        players[0] |= bit;
+                    } else if (cell.equals("1")) {
+                        players[1] |= bit;
+                    }
+                    if (!cell.equals("x")) {
+                        live |= bit;
+                    }
+                }
+            }
+            System.out.println(DIRECTIONS[boss.think(players, live, MY_ID, turn, start)]);
+        }
+    }
+
+    int think(long[] players, long live, int me, int turn, long start) {
+        deadline = start + TIME_BUDGET_NANOS;
+        aborted = false;
+        nodes = 0;
+        rootTurn = turn;
+        pawns[0][0] = players[0];
+        pawns[0][1] = players[1];
+        alive[0] = live;
+        hash[0] = fullHash(players[0], players[1], live, me);
+
+        int best = UP;
+        for (int depth = 1; depth <= Math.min(MAX_PLY, MAX_TURNS - turn); depth++) {
+            int move = searchRoot(depth, me);
+            if (aborted) {
+                break;
+            }
+            best = move;
+        }
+        return best;
+    }
+
+    int searchRoot(int depth, int me) {
+        int alpha = -WIN - 1;
+        int bestMove = UP;
+        int ttMove = table.move(tableKey(0));
+        for (int i = 0; i < 4; i++) {
+            int direction = i == 0 ? ttMove : (i <= ttMove ? i - 1 : i);
+            play(0, me, direction);
+            int score = -negamax(1, depth - 1, -WIN - 1, -alpha, 1 - me);
+            if (aborted) {
+                return bestMove;
+            }
+            if (score > alpha) {
+                alpha = score;
+                bestMove = direction;
+            }
+        }
+        table.store(tableKey(0), depth, alpha, TranspositionTable.EXACT, bestMove);
+        return bestMove;
+    }
+
+    int negamax(int ply, int depth, int alpha, int beta, int player) {
+        if ((++nodes & 1023) == 0 && System.nanoTime() > deadline) {
+            aborted = true;
+            return 0;
+        }
+
+        long mine = pawns[ply][player];
+        long theirs = pawns[ply][1 - player];
+        // The referee checks player 0 first when both lose their last pawn on the same turn
+        if (pawns[ply][0] == 0) {
+            return player == 1 ? WIN - ply : -WIN + ply;
+        } else if (pawns[ply][1] == 0) {
+            return player == 0 ? WIN - ply : -WIN + ply;
+        }
+        if (rootTurn + ply >= MAX_TURNS) {
+            int diff = Long.bitCount(mine) - Long.bitCount(theirs);
+            return diff > 0 ? WIN - ply : diff < 0 ? -WIN + ply : 0;
+        }
+        if (depth == 0) {
+            return evaluate(mine, theirs, alive[ply]);
+        }
+
+        long key = tableKey(ply);
+        int ttMove = table.move(key);
+        if (table.probe(key, depth)) {
+            int score = fromTable(table.score(key), ply);
+            int bound = table.bound(key);
+            if (bound == TranspositionTable.EXACT
+                    || (bound == TranspositionTable.LOWER && score >= beta)
+                    || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                return score;
+            }
+        }
+
+        int originalAlpha = alpha;
+        int best = -WIN - 1;
+        int bestMove = ttMove;
+        for (int i = 0; i < 4; i++) {
+            int direction = i == 0 ? ttMove : (i <= ttMove ? i - 1 : i);
+            play(ply, player, direction);
+            int score = -negamax(ply + 1, depth - 1, -beta, -alpha, 1 - player);
+            if (aborted) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                bestMove = direction;
+            }
+            if (score > alpha) {
+                alpha = score;
+            }
+            if (alpha >= beta) {
+                break;
+            }
+        }
+
+        int bound = best <= originalAlpha ? TranspositionTable.UPPER
+                : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+        table.store(key, depth, toTable(best, ply), bound, bestMove);
+        return best;
+    }
+
+    /**
+     * Transposition table key of the position at the given ply. Within MAX_PLY turns of the turn limit,
+     * the searches of a position end there at different depths depending on the turns left, so these are part of the key.
+     */
+    long tableKey(int ply) {
+        int turnsLeft = MAX_TURNS - rootTurn - ply;
+        return turnsLeft <= MAX_PLY ? hash[ply] ^ TURNS_LEFT_KEYS[Math.max(0, turnsLeft)] : hash[ply];
+    }
+
+    /**
+     * Won and lost scores count plies from the root in the search, and from the position in the table,
+     * so that an entry is right at any ply.
+     */
+    static int toTable(int score, int ply) {
+        return score >= WON ? score + ply : score <= -WON ? score - ply : score;
+    }
+
+    static int fromTable(int score, int ply) {
+        return score >= WON ? score - ply : score <= -WON ? score + ply : score;
+    }
+
+    /**
+     * Pawn difference first, then how far pawns are from the edges of the live area,
+     * since pawns on the edges are the next ones to fall.
+     */
+    static int evaluate(long mine, long theirs, long live) {
+        int score = 100 * (Long.bitCount(mine) - Long.bitCount(theirs));
+        long inner = live & shift(live, UP) & shift(live, DOWN) & shift(live, LEFT) & shift(live, RIGHT);
+        score += 10 * (Long.bitCount(mine & inner) - Long.bitCount(theirs & inner));
+        return score;
+    }
+
+    /**
+     * Plays the move from the position at the given ply into the next ply, updating the hash
+     * with the changed cells only.
+     */
+    void play(int ply, int player, int direction) {
+        long own = pawns[ply][player];
+        long opponent = pawns[ply][1 - player];
+        long live = alive[ply];
+
+        long pushing = pushChain(own, opponent, direction);
+        long pushed = pushing & ~own;
+        long landing = shift(live, (direction + 2) & 3);
+        long newOwn = shift(own & landing, direction);
+        long newOpponent = (opponent & ~pushed) | shift(pushed & landing, direction);
+        long newLive = trim(newOwn | newOpponent, live);
+
+        long key = hash[ply] ^ SIDE_KEY;
+        key = toggle(key, own ^ newOwn, PAWN_KEYS[player]);
+        key = toggle(key, opponent ^ newOpponent, PAWN_KEYS[1 - player]);
+        key = toggle(key, live ^ newLive, DEAD_KEYS);
+
+        pawns[ply + 1][player] = newOwn;
+        pawns[ply + 1][1 - player] = newOpponent;
+        alive[ply + 1] = newLive;
+        hash[ply + 1] = key;
+    }
+
+    static long toggle(long key, long changed, long[] keys) {
+        for (; changed != 0; changed &= changed - 1) {
+            key ^= keys[Long.numberOfTrailingZeros(changed)];
+        }
+        return key;
+    }
+
+    static long fullHash(long player0, long player1, long live, int sideToMove) {
+        long key = toggle(0, player0, PAWN_KEYS[0]);
+        key = toggle(key, player1, PAWN_KEYS[1]);
+        key = toggle(key, ~live, DEAD_KEYS);
+        return sideToMove == 1 ? key ^ SIDE_KEY : key;
+    }
+
+    /**
+     * Live tiles once the lines and columns without pawns on the edges are removed.
+     */
+    static long trim(long occupied, long live) {
+        if (occupied == 0) {
+            return 0;
+        }
+        int top = Long.numberOfTrailingZeros(occupied) >>> 3;
+        int bottom = (63 - Long.numberOfLeadingZeros(occupied)) >>> 3;
+        long columns = occupied;
+        columns |= columns >>> 32;
+        columns |= columns >>> 16;
+        columns |= columns >>> 8;
+        columns &= FIRST_LINE;
+        int left = Long.numberOfTrailingZeros(columns);
+        int right = 63 - Long.numberOfLeadingZeros(columns);
+        long lines = (-1L >>> ((7 - bottom) * 8)) & (-1L << (top * 8));
+        long cols = FIRST_COLUMN * ((FIRST_LINE >>> (7 - right)) & (FIRST_LINE << left) & FIRST_LINE);
+        return live & lines & cols;
+    }
+
+    static long pushChain(long own, long opponent, int direction) {
+        long chain = own;
+        long link = opponent;
+        int step = direction == UP || direction == DOWN ? 8 : 1;
+        if (direction == RIGHT) {
+            link &= ~FIRST_COLUMN;
+        } else if (direction == LEFT) {
+            link &= ~LAST_COLUMN;
+        }
+        for (int i = 0; i < 3; i++, step <<= 1) {
+            if (direction == UP || direction == LEFT) {
+                chain |= link & (chain >>> step);
+                link &= link >>> step;
+            } else {
+                chain |= link & (chain << step);
+                link &= link << step;
+            }
+        }
+        return chain;
+    }
+
+    static long shift(long board, int direction) {
+        switch (direction) {
+            case UP:
+                return board >>> 8;
+            case DOWN:
+                return board << 8;
+            case RIGHT:
+                return (board & ~LAST_COLUMN) << 1;
+            default:
+                return (board & ~FIRST_COLUMN) >>> 1;
+        }
+    }
+
+    /**
+     * Fixed-size table of 2^bits entries, always replacing. Each entry is a pair of longs
+     * storing the key xored with the data, so a torn or colliding entry never verifies
+     * and no locking is needed if the table is ever shared between threads.
+     */
+    static final class TranspositionTable {
+        static final int EXACT = 0, LOWER = 1, UPPER = 2;
+
+        final long[] entries;
+        final int mask;
+
+        TranspositionTable(int bits) {
+            entries = new long[2 << bits];
+            mask = (1 << bits) - 1;
+        }
+
+        void store(long key, int depth, int score, int bound, int move) {
+            long data = (score & 0xFFFFFFFFL) | ((long) depth << 32) | ((long) bound << 40) | ((long) move << 48);
+            int index = ((int) key & mask) << 1;
+            entries[index] = key ^ data;
+            entries[index + 1] = data;
+        }
+
+        long data(long key) {
+            int index = ((int) key & mask) << 1;
+            long data = entries[index + 1];
+            return (entries[index] ^ data) == key ? data : -1L;
+        }
+
+        boolean probe(long key, int depth) {
+            long data = data(key);
+            return data != -1L && (int) ((data >>> 32) & 0xFF) >= depth;
+        }
+
+        int score(long key) {
+            return (int) data(key);
+        }
+
+        int bound(long key) {
+            return (int) ((data(key) >>> 40) & 0xFF);
+        }
+
+        int move(long key) {
+            long data = data(key);
+            return data == -1L ? UP : (int) ((data >>> 48) & 3);
         }
     }
 }
@@ -0,0 +1,175 @@
+package com.codingame.game;
+
+/**
+ * Many independent 8x8 games played in lockstep, for parameter sweeps and playouts.
+ * Games are stored as arrays of bitboards, one long per game and per board, so that a turn of
+ * every game is a single pass over a few contiguous arrays, with the same rules as BandasState:
+ * the move, the end of game checks of the referee, then edge trimming.
+ *
+ * All games play the same turn, so player 0 moves on even turns and player 1 on odd turns,
+ * each game with its own direction. Games over are left as they are by later turns.
+ * The pass branches per game: on the direction, to skip games over, and for the end of game
+ * checks. A branch-free pass masking games over was measured slower in GameBenchmark:
+ * once games end at different turns, skipping them costs less than playing every game.
+ */
+public class BandasBatch {
+    // Result of a game still being played
+    public static final int RUNNING = -1;
+    // Result of a game ending with as many pawns for both players at the turn limit
+    public static final int TIE = 2;
+
+    private final int size;
+    private final long[] pawns0;
+    private final long[] pawns1;
+    private final long[] alive;
+    // Winner, TIE or RUNNING
+    private final byte[] results;
+    private int running;
+    private int turn;
+
+    public BandasBatch(int size) {
+        this.size = size;
+        pawns0 = new long[size];
+        pawns1 = new long[size];
+        alive = new long[size];
+        results = new byte[size];
+    }
+
+    /**
+     * Starts every game again from the starting position of its seed.
+     */
+    public void reset(long[] seeds) {
+        reset(seeds, StartingPositions.Layout.COMPATIBLE);
+    }
+
+    public void reset(long[] seeds, StartingPositions.Layout layout) {
+        if(seeds.length != size) {
+            throw new IllegalArgumentException(seeds.length + " seeds for " + size + " games");
+        }
+        for(int game=0; game<size; game++) {
+            long[] lines = StartingPositions.get(layout, BandasState.WIDTH, BandasState.HEIGHT, seeds[game]);
+            long player0 = 0;
+            for(int y=0; y<BandasState.HEIGHT; y++) {
+                player0 |= lines[y] << (y * BandasState.WIDTH);
+            }
+            pawns0[game] = player0;
+            pawns1[game] = ~player0;
+            alive[game] = -1L;
+            results[game] = RUNNING;
+        }
+        running = size;
+        turn = 0;
+    }
+
+    /**
+     * Starts one game from the given position, at the current turn of the batch.
+     */
+    public void set(int game, BandasState state) {
+        if(results[game] != RUNNING) {
+            running++;
+        }
+        pawns0[game] = state.getPawns(0);
+        pawns1[game] = state.getPawns(1);
+        alive[game] = state.getAlive();
+        results[game] = RUNNING;
+    }
+
+    /**
+     * Plays a turn of every running game, each in its own direction, BandasState.UP to LEFT.
+     */
+    public void step(byte[] directions) {
+        if(turn == BandasState.MAX_TURNS) {
+            throw new IllegalStateException("All games are over after " + BandasState.MAX_TURNS + " turns");
+        }
+        int playerId = turn & 1;
+        boolean last = turn == BandasState.MAX_TURNS - 1;
+        long[] ownPawns = playerId == 0 ? pawns0 : pawns1;
+        long[] opponentPawns = playerId == 0 ? pawns1 : pawns0;
+        for(int game=0; game<size; game++) {
+            if(results[game] != RUNNING) {
+                continue;
+            }
+            int direction = directions[game];
+            long own = ownPawns[game];
+            long opponent = opponentPawns[game];
+            long pushing = BandasState.pushChain(own, opponent, direction);
+            long pushed = pushing & ~own;
+            long landing = BandasState.shift(alive[game], BandasState.opposite(direction));
+            own = BandasState.shift(own & landing, direction);
+            opponent = (opponent & ~pushed) | BandasState.shift(pushed & landing, direction);
+            ownPawns[game] = own;
+            opponentPawns[game] = opponent;
+
+            // Same checks in the same order as Referee.gameTurn
+            long player0 = playerId == 0 ? own : opponent;
+            long player1 = playerId == 0 ? opponent : own;
+            if(player0 == 0 || player1 == 0) {
+                results[game] = (byte) (player0 == 0 ? 1 : 0);
+                running--;
+                continue;
+            }
+            alive[game] = trim(own | opponent);
+            if(last) {
+                int diff = Long.bitCount(player0) - Long.bitCount(player1);
+                results[game] = (byte) (diff > 0 ? 0 : diff < 0 ? 1 : TIE);
+                running--;
+            }
+        }
+        turn++;
+    }
+
+    /**
+     * Live tiles after edge trimming: the live area is always a rectangle holding every pawn,
+     * and trimming shrinks it to the bounding box of the pawns.
+     */
+    private static long trim(long occupied) {
+        long columns = occupied;
+        columns |= columns >>> 32;
+        columns |= columns >>> 16;
+        columns |= columns >>> 8;
+        columns &= 0xFFL;
+        int top = Long.numberOfTrailingZeros(occupied) >>> 3;
+        int bottom = (63 - Long.numberOfLeadingZeros(occupied)) >>> 3;
+        long lines = (-1L >>> ((BandasState.HEIGHT - 1 - bottom) * BandasState.WIDTH))
+                & (-1L << (top * BandasState.WIDTH));
+        long span = (Long.highestOneBit(columns) << 1) - Long.lowestOneBit(columns);
+        return lines & (0x0101010101010101L * span);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Turns played since the last reset.
+     */
+    public int getTurn() {
+        return turn;
+    }
+
+    /**
+     * Number of games still being played.
+     */
+    public int getRunning() {
+        return running;
+    }
+
+    /**
+     * Winner of the game, TIE or RUNNING.
+     */
+    public int getResult(int game) {
+        return results[game];
+    }
+
+    public long getPawns(int game, int playerId) {
+        return playerId == 0 ? pawns0[game] : pawns1[game];
+    }
+
+    public long getAlive(int game) {
+        return alive[game];
+    }
+
+    public int countPawns(int game, int playerId) {
+        return Long.bitCount(getPawns(game, playerId));
+    }
+}
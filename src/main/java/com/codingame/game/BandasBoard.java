@@ -0,0 +1,481 @@
+package com.codingame.game;
+
+import static com.codingame.game.BandasState.DEAD;
+import static com.codingame.game.BandasState.DOWN;
+import static com.codingame.game.BandasState.EMPTY;
+import static com.codingame.game.BandasState.RIGHT;
+import static com.codingame.game.BandasState.UP;
+
+/**
+ * Bandas rules engine for any board size from 8x8 to 1024x1024, used by the referee
+ * for every size but the default 8x8, which BandasState plays faster.
+ * Each line is packed in (width + 63) / 64 longs, bit x of the line standing for column x,
+ * so that moves and edge trimming work on 64 cells at a time.
+ * Follows the same rules as the fixed 8x8 BandasState.
+ */
+public class BandasBoard implements RefereeBoard {
+    public static final int MIN_SIZE = 8;
+    public static final int MAX_SIZE = 1024;
+
+    private final int width;
+    private final int height;
+    private final int words;
+
+    // Bit (y * words * 64 + x) is the cell at line y, column x; bits past the width are always 0
+    private final long[][] pawns = new long[2][];
+    private final long[] alive;
+    private final int[] pawnCounts = new int[2];
+    private int top;
+    private int bottom;
+    private int left;
+    private int right;
+    // Pawns moved and fallen during the last move, at their position before the move
+    private final long[][] moved = new long[2][];
+    private final long[] fallen;
+    // Lines changed since the last call to clearChanges, one bit per line
+    private final long[] changedLines;
+    // Scratch lines for horizontal moves
+    private final long[] ownLine;
+    private final long[] opponentLine;
+    private final long[] pushedLine;
+
+    public BandasBoard(int width, int height) {
+        if (width < MIN_SIZE || width > MAX_SIZE || height < MIN_SIZE || height > MAX_SIZE
+                || width % 2 != 0 || height % 2 != 0) {
+            throw new IllegalArgumentException("Invalid board size " + width + "x" + height
+                    + ": width and height must be even, between " + MIN_SIZE + " and " + MAX_SIZE);
+        }
+        this.width = width;
+        this.height = height;
+        words = (width + 63) >>> 6;
+        int size = words * height;
+        pawns[0] = new long[size];
+        pawns[1] = new long[size];
+        moved[0] = new long[size];
+        moved[1] = new long[size];
+        fallen = new long[size];
+        alive = new long[size];
+        for (int y = 0; y < height; y++) {
+            fillLine(alive, y, 0, width - 1);
+        }
+        top = 0;
+        bottom = height - 1;
+        left = 0;
+        right = width - 1;
+        changedLines = new long[(height + 63) >>> 6];
+        markAllChanged();
+        ownLine = new long[words];
+        opponentLine = new long[words];
+        pushedLine = new long[words];
+    }
+
+    /**
+     * Starting position of the original referee for this seed, see StartingPositions.
+     */
+    public static BandasBoard fromSeed(int width, int height, long seed) {
+        return fromSeed(width, height, seed, StartingPositions.Layout.COMPATIBLE);
+    }
+
+    public static BandasBoard fromSeed(int width, int height, long seed, StartingPositions.Layout layout) {
+        BandasBoard board = new BandasBoard(width, height);
+        long[] player0 = StartingPositions.get(layout, width, height, seed);
+        for(int i = 0; i < player0.length; i++) {
+            board.pawns[0][i] = player0[i];
+            board.pawns[1][i] = board.alive[i] & ~player0[i];
+        }
+        board.pawnCounts[0] = width * height / 2;
+        board.pawnCounts[1] = width * height / 2;
+        return board;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Sets the position from the cells as the players read them, '0', '1', '-' or 'x',
+     * line after line, without allocating. The live tiles must form a rectangle.
+     */
+    void load(byte[] cells) {
+        top = height;
+        bottom = -1;
+        left = width;
+        right = -1;
+        pawnCounts[0] = 0;
+        pawnCounts[1] = 0;
+        for (int i = 0; i < alive.length; i++) {
+            pawns[0][i] = 0;
+            pawns[1][i] = 0;
+            moved[0][i] = 0;
+            moved[1][i] = 0;
+            fallen[i] = 0;
+            alive[i] = 0;
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                byte cell = cells[y * width + x];
+                int i = y * words + (x >>> 6);
+                if (cell == '0' || cell == '1') {
+                    pawns[cell - '0'][i] |= 1L << x;
+                    pawnCounts[cell - '0']++;
+                }
+                if (cell != 'x') {
+                    alive[i] |= 1L << x;
+                    top = Math.min(top, y);
+                    bottom = y;
+                    left = Math.min(left, x);
+                    right = Math.max(right, x);
+                }
+            }
+        }
+        markAllChanged();
+    }
+
+    /**
+     * Copies the position of a board of the same size, without allocating.
+     */
+    public void copyFrom(BandasBoard other) {
+        if (other.width != width || other.height != height) {
+            throw new IllegalArgumentException("Cannot copy a " + other.width + "x" + other.height
+                    + " board to a " + width + "x" + height + " board");
+        }
+        for (int player = 0; player < 2; player++) {
+            System.arraycopy(other.pawns[player], 0, pawns[player], 0, pawns[player].length);
+            System.arraycopy(other.moved[player], 0, moved[player], 0, moved[player].length);
+            pawnCounts[player] = other.pawnCounts[player];
+        }
+        System.arraycopy(other.alive, 0, alive, 0, alive.length);
+        System.arraycopy(other.fallen, 0, fallen, 0, fallen.length);
+        top = other.top;
+        bottom = other.bottom;
+        left = other.left;
+        right = other.right;
+        markAllChanged();
+    }
+
+    /**
+     * Moves every pawn of the given player one cell in the given direction,
+     * pushing the opponent pawns in front of them. Pawns moving out of the map
+     * or onto a dead tile fall.
+     */
+    public void move(int playerId, int direction) {
+        switch (direction) {
+            case UP:
+            case DOWN:
+                moveVertically(playerId, direction == UP ? -1 : 1);
+                break;
+            default:
+                for (int y = 0; y < height; y++) {
+                    moveHorizontally(playerId, y, direction == RIGHT);
+                }
+                break;
+        }
+    }
+
+    /**
+     * A pawn is pushed when the pawn behind it moves, so chains are resolved line after
+     * line from the back, every column of a line at once. The step is -1 moving up.
+     */
+    private void moveVertically(int playerId, int step) {
+        long[] own = pawns[playerId];
+        long[] opponent = pawns[1 - playerId];
+        long[] chain = moved[playerId];
+        long[] pushed = moved[1 - playerId];
+        int first = step < 0 ? height - 1 : 0;
+        int last = step < 0 ? -1 : height;
+
+        for (int y = first; y != last; y += step) {
+            int behind = (y - step) * words;
+            boolean hasBehind = y - step >= 0 && y - step < height;
+            for (int w = 0, i = y * words; w < words; w++, i++) {
+                long pushing = hasBehind ? chain[behind + w] | pushed[behind + w] : 0;
+                pushed[i] = opponent[i] & pushing;
+                chain[i] = own[i];
+            }
+        }
+
+        // Fallen pawns, then the new positions
+        int fallenOwn = 0;
+        int fallenOpponent = 0;
+        for (int y = 0; y < height; y++) {
+            int ahead = y + step;
+            boolean hasAhead = ahead >= 0 && ahead < height;
+            for (int w = 0, i = y * words; w < words; w++, i++) {
+                long landing = hasAhead ? alive[ahead * words + w] : 0;
+                long falling = (chain[i] | pushed[i]) & ~landing;
+                fallen[i] = falling;
+                fallenOwn += Long.bitCount(falling & chain[i]);
+                fallenOpponent += Long.bitCount(falling & pushed[i]);
+            }
+        }
+        for (int y = 0; y < height; y++) {
+            int from = y - step;
+            boolean hasFrom = from >= 0 && from < height;
+            boolean changed = false;
+            for (int w = 0, i = y * words; w < words; w++, i++) {
+                long arrivingOwn = hasFrom ? chain[from * words + w] & alive[i] : 0;
+                long arrivingOpponent = hasFrom ? pushed[from * words + w] & alive[i] : 0;
+                long newOpponent = (opponent[i] & ~pushed[i]) | arrivingOpponent;
+                changed |= own[i] != arrivingOwn || opponent[i] != newOpponent;
+                own[i] = arrivingOwn;
+                opponent[i] = newOpponent;
+            }
+            if (changed) {
+                markChanged(y);
+            }
+        }
+        pawnCounts[playerId] -= fallenOwn;
+        pawnCounts[1 - playerId] -= fallenOpponent;
+    }
+
+    /**
+     * Moves one line to the right or, on the bit-reversed line, to the left. The opponent runs
+     * pushed are found by adding the run starts to the opponent pawns: the carry clears exactly
+     * the runs touching one of the player's pawns, and ripples across words.
+     */
+    private void moveHorizontally(int playerId, int y, boolean toRight) {
+        long[] own = pawns[playerId];
+        long[] opponent = pawns[1 - playerId];
+        int offset = y * words;
+        // Work on the line with bits growing in the direction of the move
+        for (int w = 0; w < words; w++) {
+            ownLine[w] = toRight ? own[offset + w] : Long.reverse(own[offset + words - 1 - w]);
+            opponentLine[w] = toRight ? opponent[offset + w] : Long.reverse(opponent[offset + words - 1 - w]);
+        }
+        long shiftCarry = 0;
+        long addCarry = 0;
+        for (int w = 0; w < words; w++) {
+            long starts = ((ownLine[w] << 1) | shiftCarry) & opponentLine[w];
+            shiftCarry = ownLine[w] >>> 63;
+            long sum = opponentLine[w] + starts;
+            long carry = Long.compareUnsigned(sum, opponentLine[w]) < 0 ? 1 : 0;
+            sum += addCarry;
+            if (addCarry == 1 && sum == 0) {
+                carry = 1;
+            }
+            addCarry = carry;
+            pushedLine[w] = opponentLine[w] & ~sum;
+        }
+        for (int w = 0; w < words; w++) {
+            moved[playerId][offset + w] = own[offset + w];
+            moved[1 - playerId][offset + w] = toRight ? pushedLine[w] : Long.reverse(pushedLine[words - 1 - w]);
+        }
+
+        // A pawn lands on the tile next to it, in the move direction
+        boolean changed = false;
+        int fallenOwn = 0;
+        int fallenOpponent = 0;
+        for (int w = 0, i = offset; w < words; w++, i++) {
+            long ownMoved = moved[playerId][i];
+            long pushed = moved[1 - playerId][i];
+            long landing = toRight
+                    ? (alive[i] >>> 1) | (w + 1 < words ? alive[i + 1] << 63 : 0)
+                    : (alive[i] << 1) | (w > 0 ? alive[i - 1] >>> 63 : 0);
+            fallen[i] = (ownMoved | pushed) & ~landing;
+            fallenOwn += Long.bitCount(fallen[i] & ownMoved);
+            fallenOpponent += Long.bitCount(fallen[i] & pushed);
+        }
+        for (int w = 0, i = offset; w < words; w++, i++) {
+            long[] source = moved[playerId];
+            long[] pushed = moved[1 - playerId];
+            long arrivingOwn = toRight
+                    ? (source[i] << 1) | (w > 0 ? source[i - 1] >>> 63 : 0)
+                    : (source[i] >>> 1) | (w + 1 < words ? source[i + 1] << 63 : 0);
+            long arrivingOpponent = toRight
+                    ? (pushed[i] << 1) | (w > 0 ? pushed[i - 1] >>> 63 : 0)
+                    : (pushed[i] >>> 1) | (w + 1 < words ? pushed[i + 1] << 63 : 0);
+            long newOwn = arrivingOwn & alive[i];
+            long newOpponent = (opponent[i] & ~pushed[i]) | (arrivingOpponent & alive[i]);
+            changed |= own[i] != newOwn || opponent[i] != newOpponent;
+            own[i] = newOwn;
+            opponent[i] = newOpponent;
+        }
+        if (changed) {
+            markChanged(y);
+        }
+        pawnCounts[playerId] -= fallenOwn;
+        pawnCounts[1 - playerId] -= fallenOpponent;
+    }
+
+    /**
+     * Removes the lines and columns on the edges of the board without any pawn on them,
+     * only looking at the edges of the live area. Returns whether any tile died.
+     */
+    public boolean trimEdges() {
+        int oldTop = top;
+        int oldBottom = bottom;
+        int oldLeft = left;
+        int oldRight = right;
+        if (pawnCounts[0] + pawnCounts[1] == 0) {
+            top = height;
+            bottom = -1;
+            left = width;
+            right = -1;
+        } else {
+            while (!lineHasPawn(top)) {
+                top++;
+            }
+            while (!lineHasPawn(bottom)) {
+                bottom--;
+            }
+            while (!columnHasPawn(left)) {
+                left++;
+            }
+            while (!columnHasPawn(right)) {
+                right--;
+            }
+        }
+
+        if (top == oldTop && bottom == oldBottom && left == oldLeft && right == oldRight) {
+            return false;
+        }
+        for (int y = oldTop; y <= oldBottom; y++) {
+            if (y < top || y > bottom) {
+                for (int w = 0; w < words; w++) {
+                    alive[y * words + w] = 0;
+                }
+                markChanged(y);
+            } else if (left != oldLeft || right != oldRight) {
+                for (int w = 0; w < words; w++) {
+                    alive[y * words + w] = 0;
+                }
+                fillLine(alive, y, left, right);
+                markChanged(y);
+            }
+        }
+        return true;
+    }
+
+    private boolean lineHasPawn(int y) {
+        for (int w = 0, i = y * words; w < words; w++, i++) {
+            if ((pawns[0][i] | pawns[1][i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean columnHasPawn(int x) {
+        int word = x >>> 6;
+        long bit = 1L << x;
+        for (int y = top, i = top * words + word; y <= bottom; y++, i += words) {
+            if (((pawns[0][i] | pawns[1][i]) & bit) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int countPawns(int playerId) {
+        return pawnCounts[playerId];
+    }
+
+    public int getTop() {
+        return top;
+    }
+
+    public int getBottom() {
+        return bottom;
+    }
+
+    public int getLeft() {
+        return left;
+    }
+
+    public int getRight() {
+        return right;
+    }
+
+    public int getCell(int y, int x) {
+        if (test(pawns[0], y, x)) {
+            return 0;
+        } else if (test(pawns[1], y, x)) {
+            return 1;
+        }
+        return test(alive, y, x) ? EMPTY : DEAD;
+    }
+
+    /**
+     * Whether a pawn of the given player moved during the last move from this cell.
+     */
+    public boolean hasMoved(int playerId, int y, int x) {
+        return test(moved[playerId], y, x);
+    }
+
+    /**
+     * Whether the pawn on this cell before the last move fell.
+     */
+    public boolean hasFallen(int y, int x) {
+        return test(fallen, y, x);
+    }
+
+    /**
+     * Whether the line changed since the last call to clearChanges, for callers caching
+     * a rendering of the board. Every line is reported as changed at first.
+     */
+    public boolean isLineChanged(int y) {
+        return (changedLines[y >>> 6] & (1L << y)) != 0;
+    }
+
+    public void clearChanges() {
+        for (int i = 0; i < changedLines.length; i++) {
+            changedLines[i] = 0;
+        }
+    }
+
+    /**
+     * Line as sent to the players: cells separated by spaces,
+     * 0 or 1 for a pawn, - for an empty tile and x for a dead one.
+     */
+    public String line(int y) {
+        char[] cells = new char[2 * width - 1];
+        for (int x = 0; x < width; x++) {
+            if (x > 0) {
+                cells[2 * x - 1] = ' ';
+            }
+            cells[2 * x] = BandasState.cellChar(getCell(y, x));
+        }
+        return new String(cells);
+    }
+
+    /**
+     * Whole board on a single line, line after line, without separators.
+     */
+    public String packed() {
+        char[] cells = new char[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                cells[y * width + x] = BandasState.cellChar(getCell(y, x));
+            }
+        }
+        return new String(cells);
+    }
+
+    private boolean test(long[] board, int y, int x) {
+        return (board[y * words + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    private void fillLine(long[] board, int y, int from, int to) {
+        fillLine(board, words, y, from, to);
+    }
+
+    private static void fillLine(long[] board, int words, int y, int from, int to) {
+        for (int x = from; x <= to; x++) {
+            board[y * words + (x >>> 6)] |= 1L << x;
+        }
+    }
+
+    private void markChanged(int y) {
+        changedLines[y >>> 6] |= 1L << y;
+    }
+
+    private void markAllChanged() {
+        for (int y = 0; y < height; y++) {
+            markChanged(y);
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package com.codingame.game;
+
+/**
+ * Headless Bandas rules engine.
+ * Each player's pawns and the live tiles are stored as 64-bit bitboards,
+ * bit (y * WIDTH + x) standing for the cell at line y, column x.
+ */
+public class BandasState {
+    public static final int WIDTH = 8;
+    public static final int HEIGHT = 8;
+    // Turn limit of a game, after which the player with more pawns wins
+    public static final int MAX_TURNS = 200;
+
+    public static final int UP = 0;
+    public static final int RIGHT = 1;
+    public static final int DOWN = 2;
+    public static final int LEFT = 3;
+
+    public static final int EMPTY = -1;
+    public static final int DEAD = -2;
+
+    private static final long FIRST_COLUMN = 0x0101010101010101L;
+    private static final long LAST_COLUMN = FIRST_COLUMN << (WIDTH - 1);
+    private static final long FIRST_LINE = 0xFFL;
+    // Moves makeMove can keep to undo, more than a whole game
+    private static final int MAX_UNDO = 256;
+    private static final int UNDO_ENTRY = 4;
+
+    private final long[] pawns = new long[2];
+    private long alive = -1L;
+    // Live pawn counts and bounds of the live area, which is always a rectangle
+    private final int[] pawnCounts = new int[2];
+    private int top = 0;
+    private int bottom = HEIGHT - 1;
+    private int left = 0;
+    private int right = WIDTH - 1;
+    // Pawns moved and fallen during the last move, indexed by their position before the move
+    private final long[] moved = new long[2];
+    private long fallen;
+    // Cells changed since the last call to takeChanges
+    private long changed = -1L;
+    // Positions before each move made by makeMove and not undone yet: pawns of each player,
+    // live tiles, then pawn counts and live area bounds one per byte. Allocated by the first makeMove
+    private long[] undo;
+    private int undoSize;
+
+    /**
+     * Starting position of the original referee for this seed, see StartingPositions.
+     */
+    public static BandasState fromSeed(long seed) {
+        return fromSeed(seed, StartingPositions.Layout.COMPATIBLE);
+    }
+
+    public static BandasState fromSeed(long seed, StartingPositions.Layout layout) {
+        long[] lines = StartingPositions.get(layout, WIDTH, HEIGHT, seed);
+        long player0 = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            player0 |= lines[y] << (y * WIDTH);
+        }
+        BandasState state = new BandasState();
+        state.pawns[0] = player0;
+        state.pawns[1] = ~player0;
+        state.pawnCounts[0] = WIDTH * HEIGHT / 2;
+        state.pawnCounts[1] = WIDTH * HEIGHT / 2;
+        return state;
+    }
+
+    /**
+     * State from the bitboards of each player's pawns and of the live tiles,
+     * as read back from the players' inputs for instance.
+     */
+    public static BandasState of(long player0, long player1, long alive) {
+        BandasState state = new BandasState();
+        state.set(player0, player1, alive);
+        return state;
+    }
+
+    /**
+     * Same as of, reusing this instance.
+     */
+    public void set(long player0, long player1, long alive) {
+        pawns[0] = player0;
+        pawns[1] = player1;
+        this.alive = alive;
+        pawnCounts[0] = Long.bitCount(player0);
+        pawnCounts[1] = Long.bitCount(player1);
+        if (alive == 0) {
+            top = HEIGHT;
+            bottom = -1;
+            left = WIDTH;
+            right = -1;
+        } else {
+            long columns = alive;
+            columns |= columns >>> 32;
+            columns |= columns >>> 16;
+            columns |= columns >>> 8;
+            columns &= FIRST_LINE;
+            top = Long.numberOfTrailingZeros(alive) / WIDTH;
+            bottom = (63 - Long.numberOfLeadingZeros(alive)) / WIDTH;
+            left = Long.numberOfTrailingZeros(columns);
+            right = 63 - Long.numberOfLeadingZeros(columns);
+        }
+        moved[0] = 0;
+        moved[1] = 0;
+        fallen = 0;
+        changed = -1L;
+        undoSize = 0;
+    }
+
+    public void copyFrom(BandasState other) {
+        pawns[0] = other.pawns[0];
+        pawns[1] = other.pawns[1];
+        alive = other.alive;
+        pawnCounts[0] = other.pawnCounts[0];
+        pawnCounts[1] = other.pawnCounts[1];
+        top = other.top;
+        bottom = other.bottom;
+        left = other.left;
+        right = other.right;
+        moved[0] = other.moved[0];
+        moved[1] = other.moved[1];
+        fallen = other.fallen;
+        changed = -1L;
+        undoSize = 0;
+    }
+
+    /**
+     * Plays a whole turn as the referee does: the move, then edge trimming unless a player has no pawn left.
+     * Returns the record to give to unmakeMove to come back to the current position. Records are
+     * kept in the state, so neither method allocates, and moves are undone in reverse order.
+     * getMoved and getFallen are not restored by unmakeMove.
+     */
+    public int makeMove(int playerId, int direction) {
+        if (undo == null) {
+            undo = new long[MAX_UNDO * UNDO_ENTRY];
+        }
+        if (undoSize == MAX_UNDO) {
+            throw new IllegalStateException("More than " + MAX_UNDO + " moves to undo");
+        }
+        int i = undoSize * UNDO_ENTRY;
+        undo[i] = pawns[0];
+        undo[i + 1] = pawns[1];
+        undo[i + 2] = alive;
+        undo[i + 3] = (pawnCounts[0] & 0xFFL) | (pawnCounts[1] & 0xFFL) << 8 | (top & 0xFFL) << 16
+                | (bottom & 0xFFL) << 24 | (left & 0xFFL) << 32 | (right & 0xFFL) << 40;
+        move(playerId, direction);
+        if (pawnCounts[0] > 0 && pawnCounts[1] > 0) {
+            trimEdges();
+        }
+        return undoSize++;
+    }
+
+    public void unmakeMove(int record) {
+        if (record != undoSize - 1) {
+            throw new IllegalStateException("Move " + record + " undone out of order, " + undoSize + " moves to undo");
+        }
+        int i = record * UNDO_ENTRY;
+        changed |= (pawns[0] ^ undo[i]) | (pawns[1] ^ undo[i + 1]) | (alive ^ undo[i + 2]);
+        pawns[0] = undo[i];
+        pawns[1] = undo[i + 1];
+        alive = undo[i + 2];
+        long info = undo[i + 3];
+        pawnCounts[0] = (byte) info;
+        pawnCounts[1] = (byte) (info >>> 8);
+        top = (byte) (info >>> 16);
+        bottom = (byte) (info >>> 24);
+        left = (byte) (info >>> 32);
+        right = (byte) (info >>> 40);
+        undoSize = record;
+    }
+
+    /**
+     * Moves every pawn of the given player one cell in the given direction,
+     * pushing the opponent pawns in front of them. Pawns moving out of the map
+     * or onto a dead tile fall.
+     */
+    public void move(int playerId, int direction) {
+        long own = pawns[playerId];
+        long opponent = pawns[1 - playerId];
+
+        long pushing = pushChain(own, opponent, direction);
+        long pushed = pushing & ~own;
+
+        // A pawn falls when its destination is not a live tile
+        long landing = shift(alive, opposite(direction));
+        fallen = pushing & ~landing;
+        moved[playerId] = own;
+        moved[1 - playerId] = pushed;
+        pawnCounts[playerId] -= Long.bitCount(fallen & own);
+        pawnCounts[1 - playerId] -= Long.bitCount(fallen & pushed);
+
+        pawns[playerId] = shift(own & landing, direction);
+        pawns[1 - playerId] = (opponent & ~pushed) | shift(pushed & landing, direction);
+        changed |= pushing | pawns[playerId] | (pawns[1 - playerId] ^ opponent);
+    }
+
+    /**
+     * Removes the lines and columns on the edges of the board without any pawn on them,
+     * only looking at the edges of the live area. Returns the mask of the newly dead tiles.
+     */
+    public long trimEdges() {
+        long occupied = pawns[0] | pawns[1];
+        long previous = alive;
+        if (occupied == 0) {
+            alive = 0;
+            top = HEIGHT;
+            bottom = -1;
+            left = WIDTH;
+            right = -1;
+            changed |= previous;
+            return previous;
+        }
+
+        while ((occupied & (FIRST_LINE << (top * WIDTH))) == 0) {
+            top++;
+        }
+        while ((occupied & (FIRST_LINE << (bottom * WIDTH))) == 0) {
+            bottom--;
+        }
+        while ((occupied & (FIRST_COLUMN << left)) == 0) {
+            left++;
+        }
+        while ((occupied & (FIRST_COLUMN << right)) == 0) {
+            right--;
+        }
+
+        long lines = (-1L >>> ((HEIGHT - 1 - bottom) * WIDTH)) & (-1L << (top * WIDTH));
+        long columns = FIRST_COLUMN * ((FIRST_LINE >>> (WIDTH - 1 - right)) & (FIRST_LINE << left) & FIRST_LINE);
+        alive = lines & columns;
+        changed |= previous & ~alive;
+        return previous & ~alive;
+    }
+
+    /**
+     * Cells changed by moves and trims since the previous call, for callers caching
+     * a rendering of the board. Everything is reported as changed on the first call.
+     */
+    public long takeChanges() {
+        long result = changed;
+        changed = 0;
+        return result;
+    }
+
+    public int countPawns(int playerId) {
+        return pawnCounts[playerId];
+    }
+
+    public int getTop() {
+        return top;
+    }
+
+    public int getBottom() {
+        return bottom;
+    }
+
+    public int getLeft() {
+        return left;
+    }
+
+    public int getRight() {
+        return right;
+    }
+
+    public int getCell(int y, int x) {
+        long bit = bit(y, x);
+        if ((pawns[0] & bit) != 0) {
+            return 0;
+        } else if ((pawns[1] & bit) != 0) {
+            return 1;
+        }
+        return (alive & bit) != 0 ? EMPTY : DEAD;
+    }
+
+    public long getPawns(int playerId) {
+        return pawns[playerId];
+    }
+
+    public long getAlive() {
+        return alive;
+    }
+
+    /**
+     * Pawns of the given player moved during the last move, at their position before the move.
+     */
+    public long getMoved(int playerId) {
+        return moved[playerId];
+    }
+
+    /**
+     * Pawns fallen during the last move, at their position before the move.
+     */
+    public long getFallen() {
+        return fallen;
+    }
+
+    /**
+     * Line as sent to the players: cells separated by spaces,
+     * 0 or 1 for a pawn, - for an empty tile and x for a dead one.
+     */
+    public String line(int y) {
+        StringBuilder sb = new StringBuilder(2 * WIDTH - 1);
+        for(int x=0; x<WIDTH; x++) {
+            if (x > 0) {
+                sb.append(' ');
+            }
+            sb.append(cellChar(getCell(y, x)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Whole board on a single line, line after line, without separators.
+     */
+    public String packed() {
+        char[] cells = new char[WIDTH * HEIGHT];
+        for(int y=0; y<HEIGHT; y++) {
+            for(int x=0; x<WIDTH; x++) {
+                cells[y * WIDTH + x] = cellChar(getCell(y, x));
+            }
+        }
+        return new String(cells);
+    }
+
+    public static char cellChar(int cell) {
+        switch (cell) {
+            case EMPTY:
+                return '-';
+            case DEAD:
+                return 'x';
+            default:
+                return (char) ('0' + cell);
+        }
+    }
+
+    public static long bit(int y, int x) {
+        return 1L << (y * WIDTH + x);
+    }
+
+    public static int opposite(int direction) {
+        return (direction + 2) & 3;
+    }
+
+    /**
+     * Pawns moving in the given direction: the mover's pawns and the opponent pawns
+     * linked to one of them by an unbroken chain of pawns. The chains are resolved in a
+     * single pass for the whole board with an occluded fill of 1, 2 then 4 cells,
+     * so a chain of any length on a line or column costs the same.
+     */
+    public static long pushChain(long own, long opponent, int direction) {
+        long chain = own;
+        long link = opponent;
+        switch (direction) {
+            case UP:
+                chain |= link & (chain >>> WIDTH);
+                link &= link >>> WIDTH;
+                chain |= link & (chain >>> (2 * WIDTH));
+                link &= link >>> (2 * WIDTH);
+                chain |= link & (chain >>> (4 * WIDTH));
+                return chain;
+            case DOWN:
+                chain |= link & (chain << WIDTH);
+                link &= link << WIDTH;
+                chain |= link & (chain << (2 * WIDTH));
+                link &= link << (2 * WIDTH);
+                chain |= link & (chain << (4 * WIDTH));
+                return chain;
+            case RIGHT:
+                // Links never cross from the last column to the first one of the next line
+                link &= ~FIRST_COLUMN;
+                chain |= link & (chain << 1);
+                link &= link << 1;
+                chain |= link & (chain << 2);
+                link &= link << 2;
+                chain |= link & (chain << 4);
+                return chain;
+            default:
+                link &= ~LAST_COLUMN;
+                chain |= link & (chain >>> 1);
+                link &= link >>> 1;
+                chain |= link & (chain >>> 2);
+                link &= link >>> 2;
+                chain |= link & (chain >>> 4);
+                return chain;
+        }
+    }
+
+    public static long shift(long board, int direction) {
+        switch (direction) {
+            case UP:
+                return board >>> WIDTH;
+            case DOWN:
+                return board << WIDTH;
+            case RIGHT:
+                return (board & ~LAST_COLUMN) << 1;
+            default:
+                return (board & ~FIRST_COLUMN) >>> 1;
+        }
+    }
+}
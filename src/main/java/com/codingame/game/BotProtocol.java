@@ -0,0 +1,251 @@
+package com.codingame.game;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bot side of the referee protocol, for bots written against this project: reads the inputs
+ * straight from the bytes of the input stream into a board of cells, and writes the moves,
+ * without allocating once created. Handles the default protocol of the statement as well as the
+ * packed and delta variants.
+ *
+ * The board of the turn can be loaded into a BandasState, for 8x8 boards, or a BandasBoard, which
+ * apply the referee's rules, so that bots search with the exact moves, falls and edge trimming.
+ */
+public class BotProtocol {
+    public enum Variant {
+        LINES, PACKED, DELTA
+    }
+
+    // Before the first move of the game, in the packed and delta variants
+    public static final int NO_MOVE = -1;
+
+    private static final byte[][] MOVES = {
+            ascii("UP\n"), ascii("RIGHT\n"), ascii("DOWN\n"), ascii("LEFT\n")};
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final InputStream in;
+    private final OutputStream out;
+    private final Variant variant;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+
+    private int myId;
+    private int height;
+    private int width;
+    private byte[] cells;
+    private int turn;
+    private int lastMove = NO_MOVE;
+
+    public BotProtocol(InputStream in, OutputStream out, Variant variant) {
+        this.in = in;
+        this.out = out;
+        this.variant = variant;
+    }
+
+    public BotProtocol(InputStream in, OutputStream out) {
+        this(in, out, Variant.LINES);
+    }
+
+    /**
+     * Reads the initialization input: the player id and the board size.
+     */
+    public void readInit() throws IOException {
+        myId = readInt();
+        height = readInt();
+        width = readInt();
+        cells = new byte[height * width];
+        turn = myId - 2;
+    }
+
+    /**
+     * Reads the inputs of the next turn, false once the referee closed the input.
+     */
+    public boolean readTurn() throws IOException {
+        if(skipWhitespace() < 0) {
+            return false;
+        }
+        switch(variant) {
+            case PACKED:
+                lastMove = readMove();
+                readCells();
+                break;
+            case DELTA:
+                lastMove = readMove();
+                for(int changed=readInt(); changed>0; changed--) {
+                    int y = readInt();
+                    int x = readInt();
+                    cells[y * width + x] = (byte) readToken();
+                }
+                break;
+            default:
+                readCells();
+                break;
+        }
+        turn += 2;
+        return true;
+    }
+
+    public void writeMove(int direction) throws IOException {
+        out.write(MOVES[direction]);
+        out.flush();
+    }
+
+    public int getMyId() {
+        return myId;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Game turn, counting both players' moves from 0.
+     */
+    public int getTurn() {
+        return turn;
+    }
+
+    /**
+     * Opponent's last move, BandasState.UP to LEFT, or NO_MOVE. Only sent in the packed and delta variants.
+     */
+    public int getLastMove() {
+        return lastMove;
+    }
+
+    /**
+     * 0 or 1 for a pawn, BandasState.EMPTY or BandasState.DEAD.
+     */
+    public int getCell(int y, int x) {
+        byte cell = cells[y * width + x];
+        return cell == '0' ? 0 : cell == '1' ? 1 : cell == 'x' ? BandasState.DEAD : BandasState.EMPTY;
+    }
+
+    /**
+     * Loads the board of the turn into the state, for 8x8 boards.
+     */
+    public void load(BandasState state) {
+        if(width != BandasState.WIDTH || height != BandasState.HEIGHT) {
+            throw new IllegalStateException("BandasState only holds 8x8 boards, not " + width + "x" + height);
+        }
+        long player0 = 0;
+        long player1 = 0;
+        long alive = 0;
+        for(int i=0; i<cells.length; i++) {
+            byte cell = cells[i];
+            if(cell == '0') {
+                player0 |= 1L << i;
+            } else if(cell == '1') {
+                player1 |= 1L << i;
+            }
+            if(cell != 'x') {
+                alive |= 1L << i;
+            }
+        }
+        state.set(player0, player1, alive);
+    }
+
+    /**
+     * Loads the board of the turn into a board of the same size.
+     */
+    public void load(BandasBoard board) {
+        if(board.getWidth() != width || board.getHeight() != height) {
+            throw new IllegalArgumentException("Cannot load a " + width + "x" + height + " board into a "
+                    + board.getWidth() + "x" + board.getHeight() + " board");
+        }
+        board.load(cells);
+    }
+
+    private void readCells() throws IOException {
+        for(int i=0; i<cells.length; i++) {
+            cells[i] = (byte) readToken();
+        }
+    }
+
+    /**
+     * Direction from its first letter, NO_MOVE for NONE.
+     */
+    private int readMove() throws IOException {
+        int first = readToken();
+        while(position < limit || fill()) {
+            if(buffer[position] <= ' ') {
+                break;
+            }
+            position++;
+        }
+        switch(first) {
+            case 'U':
+                return BandasState.UP;
+            case 'R':
+                return BandasState.RIGHT;
+            case 'D':
+                return BandasState.DOWN;
+            case 'L':
+                return BandasState.LEFT;
+            default:
+                return NO_MOVE;
+        }
+    }
+
+    private int readInt() throws IOException {
+        int c = readToken();
+        boolean negative = c == '-';
+        int value = negative ? read() - '0' : c - '0';
+        while((position < limit || fill()) && buffer[position] >= '0' && buffer[position] <= '9') {
+            value = value * 10 + buffer[position++] - '0';
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * First byte of the next token.
+     */
+    private int readToken() throws IOException {
+        if(skipWhitespace() < 0) {
+            throw new EOFException("Unexpected end of input");
+        }
+        return buffer[position++];
+    }
+
+    private int read() throws IOException {
+        if(position == limit && !fill()) {
+            throw new EOFException("Unexpected end of input");
+        }
+        return buffer[position++];
+    }
+
+    /**
+     * Skips spaces and line breaks, returning the next byte without consuming it, -1 at the end of the input.
+     */
+    private int skipWhitespace() throws IOException {
+        while(position < limit || fill()) {
+            if(buffer[position] > ' ') {
+                return buffer[position];
+            }
+            position++;
+        }
+        return -1;
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private boolean fill() throws IOException {
+        int read = in.read(buffer, 0, buffer.length);
+        if(read <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+}
@@ -0,0 +1,27 @@
+package com.codingame.game;
+
+/**
+ * Emits a TurnEvent per referee turn, lasting the whole turn.
+ */
+final class JfrTurnEvents implements TurnEvents {
+    private TurnEvent event;
+
+    @Override
+    public void startTurn() {
+        event = new TurnEvent();
+        event.begin();
+    }
+
+    @Override
+    public void endTurn(int turn, int playerId, long[] phases) {
+        event.turn = turn;
+        event.player = playerId;
+        event.sendInputs = phases[TurnProfiler.SEND_INPUTS];
+        event.execute = phases[TurnProfiler.EXECUTE];
+        event.rules = phases[TurnProfiler.RULES];
+        event.trim = phases[TurnProfiler.TRIM];
+        event.render = phases[TurnProfiler.RENDER];
+        event.commit();
+        event = null;
+    }
+}
@@ -9,50 +9,102 @@ import com.codingame.gameengine.module.entities.Sprite;
 import com.codingame.gameengine.module.entities.Text;
 import com.google.inject.Inject;
 
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Random;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Referee extends AbstractReferee {
     @Inject private MultiplayerGameManager<Player> gameManager;
     @Inject private GraphicEntityModule graphicEntityModule;
 
-    private static final int WIDTH = 8;
-    private static final int HEIGHT = 8;
-    private static final int MAX_TURNS = 200;
-    private static final String DEAD_TILE_CHAR = "x";
-    private static final String EMPTY_TILE_CHAR = "-";
-    private static final String[][] GRID = new String[HEIGHT][WIDTH];
-    private static final Sprite[][] PAWNS = new Sprite[HEIGHT][WIDTH];
-    private static final Sprite[][] TILES = new Sprite[HEIGHT][WIDTH];
-    private static Text[] PAWNS_COUNTERS = new Text[2];
+    private static final int DEFAULT_SIZE = 8;
+    // Larger boards are played headless, their cells would be too small to see
+    private static final int MAX_DRAWN_SIZE = 32;
+    private static final int TURN_MAX_TIME = 100;
+    // Cell size of the default board, the grid is scaled down for larger ones
     private static final int CELL_SIZE = 100;
     private static final int CANVAS_WIDTH = 1920;
     private static final int CANVAS_HEIGHT = 1080;
     private static  final String[] DIRECTIONS = {"UP", "RIGHT", "DOWN", "LEFT"};
-    private static final HashMap<String, int[]> NEXT_POS;
-    static
-    {
-        NEXT_POS = new HashMap<String, int[]>();
-        NEXT_POS.put("UP", new int[] {-1, 0});
-        NEXT_POS.put("DOWN", new int[] {1, 0});
-        NEXT_POS.put("RIGHT", new int[] {0, 1});
-        NEXT_POS.put("LEFT", new int[] {0, -1});
-    }
+    // Line and column offsets of a move, indexed like DIRECTIONS
+    private static final int[][] NEXT_POS = {{-1, 0}, {0, 1}, {1, 0}, {0, -1}};
+
+    // Game state is per instance so that several games can run in the same JVM
+    private RefereeBoard state;
+    private int width;
+    private int height;
+    private int cellSize;
+    private StartingPositions.Layout layout;
+    private Sprite[][] pawns;
+    private Sprite[][] tiles;
+    private final Text[] pawnsCounters = new Text[2];
+    // Last values sent to the viewer, so that frames only carry real changes
+    private final int[] shownPawnCounts = new int[2];
+    private final List<Sprite> fallingPawns = new ArrayList<>();
+    // Input lines, only rebuilt when a move or a trim changed them
+    private String[] lines;
+    // Headless games skip all the rendering, for batch runs nobody watches
+    private boolean headless;
+    private int turns;
+    // Input protocol: "lines" by default, or the opt-in "packed" and "delta" variants
+    private String protocol;
+    private String lastMove = "NONE";
+    private String packedLine;
+    // Cells as last sent to each player in the delta protocol, null before the first turn
+    private final char[][] sentCells = new char[2][];
+    // Lines changed since each player's previous turn in the delta protocol, one bit per line
+    private long[][] unsentLines;
+    private final StringBuilder deltaCells = new StringBuilder();
+    private final StringBuilder deltaLine = new StringBuilder();
+    // Binary replay appended at the end of the game when the "replay" parameter names a file
+    private String replayFile;
+    private final byte[] moves = new byte[BandasState.MAX_TURNS];
+    private int moveCount;
+    private int end = Replay.END_NORMAL;
+    // Phase timings and agent response times, reported in the "timings" metadata when asked
+    private TurnProfiler profiler;
+    private boolean timings;
 
     @Override
     public void init() {
-        gameManager.setTurnMaxTime(100);
-        gameManager.setMaxTurns(MAX_TURNS);
-        addPawns(gameManager.getSeed());
-        drawGrid();
-        String panwsPerPlayer = Integer.toString(WIDTH * HEIGHT / 2);
+        gameManager.setTurnMaxTime(TURN_MAX_TIME);
+        gameManager.setMaxTurns(BandasState.MAX_TURNS);
+        headless = Boolean.parseBoolean(gameManager.getGameParameters().getProperty("headless"));
+        protocol = gameManager.getGameParameters().getProperty("protocol", "lines");
+        if(!protocol.equals("lines") && !protocol.equals("packed") && !protocol.equals("delta")) {
+            throw new IllegalArgumentException("Invalid protocol: " + protocol + ", expected lines, packed or delta");
+        }
+        replayFile = gameManager.getGameParameters().getProperty("replay");
+        timings = Boolean.parseBoolean(gameManager.getGameParameters().getProperty("timings"));
+        profiler = new TurnProfiler(TURN_MAX_TIME,
+                Boolean.parseBoolean(gameManager.getGameParameters().getProperty("jfr")));
+        width = getSizeParameter("width");
+        height = getSizeParameter("height");
+        layout = StartingPositions.Layout.valueOf(
+                gameManager.getGameParameters().getProperty("layout", "compatible").toUpperCase());
+        state = RefereeBoard.fromSeed(width, height, gameManager.getSeed(), layout);
+        lines = new String[height];
+        unsentLines = new long[2][(height + 63) >>> 6];
+        headless = headless || Math.max(width, height) > MAX_DRAWN_SIZE;
+        String panwsPerPlayer = Integer.toString(width * height / 2);
 
         for(Player player : gameManager.getPlayers()) {
             // Send player id, height and width
             player.sendInputLine(String.format("%d", player.getIndex()));
-            player.sendInputLine(String.format("%d", HEIGHT));
-            player.sendInputLine(String.format("%d", WIDTH));
+            player.sendInputLine(String.format("%d", height));
+            player.sendInputLine(String.format("%d", width));
+        }
+        if(headless) {
+            return;
+        }
+
+        cellSize = CELL_SIZE * DEFAULT_SIZE / Math.max(width, height);
+        pawns = new Sprite[height][width];
+        tiles = new Sprite[height][width];
+        drawGrid();
+        for(Player player : gameManager.getPlayers()) {
             int playerIndex = player.getIndex();
             graphicEntityModule.createText(player.getNicknameToken())
                     .setX(130 + playerIndex * 1400)
@@ -67,7 +119,8 @@ public class Referee extends AbstractReferee {
                     .setZIndex(20)
                     .setImage(player.getAvatarToken())
                     .setAnchor(0.5);
-            PAWNS_COUNTERS[playerIndex] = graphicEntityModule.createText(panwsPerPlayer)
+            shownPawnCounts[playerIndex] = width * height / 2;
+            pawnsCounters[playerIndex] = graphicEntityModule.createText(panwsPerPlayer)
                     .setX(210 + playerIndex * 1400)
                     .setY(150 + 100 * (playerIndex / 2))
                     .setZIndex(20)
@@ -77,103 +130,98 @@ public class Referee extends AbstractReferee {
         }
     }
 
+    /**
+     * Board size from the game parameters, the default board when not set.
+     */
+    private int getSizeParameter(String name) {
+        String value = gameManager.getGameParameters().getProperty(name);
+        if(value == null) {
+            return DEFAULT_SIZE;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid board " + name + ": " + value, e);
+        }
+    }
+
     private void drawGrid() {
-        int startY = Math.round((CANVAS_HEIGHT - (HEIGHT * CELL_SIZE)) / 2) + 30;
-        int startX = Math.round((CANVAS_WIDTH - (WIDTH * CELL_SIZE)) / 2);
+        int startY = Math.round((CANVAS_HEIGHT - (height * cellSize)) / 2) + 30;
+        int startX = Math.round((CANVAS_WIDTH - (width * cellSize)) / 2);
+        double scale = (double) cellSize / CELL_SIZE;
 
-        for(int i=0; i<HEIGHT; i++){
-            for(int j=0; j<WIDTH; j++){
+        for(int i=0; i<height; i++){
+            for(int j=0; j<width; j++){
                 // Draw Tile
-                TILES[i][j] = graphicEntityModule.createSprite()
-                        .setX(startX +(CELL_SIZE * j))
+                tiles[i][j] = graphicEntityModule.createSprite()
+                        .setX(startX +(cellSize * j))
                         .setY(startY)
                         .setImage("medievalTile_27.png")
-                        .setScale(1.5625);
-                String cellValue = GRID[i][j];
+                        .setScale(1.5625 * scale);
+                int cellValue = state.getCell(i, j);
                 // Draw Pawn
-                if(cellHasPlayer(cellValue)){
-                    PAWNS[i][j] = drawPawn(
-                            startX + (CELL_SIZE * j) + (CELL_SIZE / 2),
-                            startY + (CELL_SIZE / 2),
-                            Integer.parseInt(cellValue)
+                if(cellValue >= 0){
+                    pawns[i][j] = drawPawn(
+                            startX + (cellSize * j) + (cellSize / 2),
+                            startY + (cellSize / 2),
+                            cellValue,
+                            scale
                     );
                 }
             }
-            startY += CELL_SIZE;
+            startY += cellSize;
         }
     }
 
-    private Sprite drawPawn(int x, int y, int playerId) {
-        return graphicEntityModule.createSprite()
-                .setX(x-33)
-                .setY(y-46)
+    private Sprite drawPawn(int x, int y, int playerId, double scale) {
+        Sprite pawn = graphicEntityModule.createSprite()
+                .setX(x - (int) Math.round(33 * scale))
+                .setY(y - (int) Math.round(46 * scale))
                 .setImage(String.format("pawn_%d.png", playerId))
                 .setZIndex(2);
-    }
-
-    private void addPawns(long seed) {
-        Random rng = new Random(seed);
-        int pawnsPerPlayer = WIDTH * HEIGHT / 2;
-        int pawnsInCenterSquarePerPlayer = 8;
-        // Balance center 4*4 square
-        for(int pawn=0; pawn<pawnsInCenterSquarePerPlayer; pawn++){
-            int i, j;
-            do {
-                i = rng.nextInt(4) + 2;
-                j = rng.nextInt(4) + 2;
-            } while (GRID[i][j] != null);
-            GRID[i][j] = "0";
-        }
-
-        for(int i=2; i<6; i++){
-            for(int j=2; j<6; j++){
-                if(GRID[i][j] == null){
-                    GRID[i][j] = "1";
-                }
-            }
-        }
-        // Remainings tiles
-        // Place all pawns for player 0 randomly
-        for(int pawn=0; pawn<pawnsPerPlayer-pawnsInCenterSquarePerPlayer; pawn++){
-            int i, j;
-            do {
-                i = rng.nextInt(HEIGHT);
-                j = rng.nextInt(WIDTH);
-            } while (GRID[i][j] != null);
-            GRID[i][j] = "0";
-        }
-        // All empty cells are for player 1
-        for(int i=0; i<HEIGHT; i++){
-            for(int j=0; j<WIDTH; j++){
-                if(GRID[i][j] == null){
-                    GRID[i][j] = "1";
-                }
-            }
+        if(scale != 1) {
+            pawn.setScale(scale);
         }
+        return pawn;
     }
 
     @Override
     public void gameTurn(int turn) {
-        String playerId = Integer.toString(turn % gameManager.getPlayerCount());
-        Player player = gameManager.getPlayer(Integer.parseInt(playerId));
+        profiler.startTurn(turn, turn % gameManager.getPlayerCount());
+        try {
+            playTurn(turn);
+        } finally {
+            profiler.endTurn();
+        }
+    }
+
+    private void playTurn(int turn) {
+        int playerId = turn % gameManager.getPlayerCount();
+        Player player = gameManager.getPlayer(playerId);
         String output = "";
+        turns = turn + 1;
 
         sendInputs(player);
+        profiler.phase(TurnProfiler.SEND_INPUTS);
         player.execute();
+        profiler.phase(TurnProfiler.EXECUTE);
 
         // Read player output
         try {
             output = player.getOutputs().get(0);
-            if(!Arrays.asList(DIRECTIONS).contains(output)){ // invalid ouput
-                gameManager.addToGameSummary(String.format("Player %s played invalid output %s",
-                        player.getNicknameToken(), output));
+            int direction = parseDirection(output);
+            if(direction < 0){ // invalid ouput
+                gameManager.addToGameSummary("Player " + player.getNicknameToken()
+                        + " played invalid output " + output);
                 deactivatePlayer(player, "Invalid action.");
                 return;
             }
-            handlePlayerOutput(output, playerId);
+            handlePlayerOutput(direction, playerId);
+            lastMove = DIRECTIONS[direction];
+            moves[moveCount++] = (byte) direction;
         } catch (IndexOutOfBoundsException e) {
-            gameManager.addToGameSummary(String.format("Player %s did not output anything",
-                    player.getNicknameToken()));
+            gameManager.addToGameSummary("Player " + player.getNicknameToken()
+                    + " did not output anything");
             deactivatePlayer(player, "No output");
             return;
         } catch (TimeoutException e) {
@@ -183,20 +231,21 @@ public class Referee extends AbstractReferee {
             return;
         }
 
-        gameManager.addToGameSummary(String.format("Player %s played %s",
-                player.getNicknameToken(), output));
+        gameManager.addToGameSummary("Player " + player.getNicknameToken() + " played " + output);
 
         checkWinner();
-        findEmptyLines();
-        findEmptyColumns();
+        profiler.phase(TurnProfiler.RULES);
+        trimEdges();
         updatePawnCounter();
+        profiler.phase(TurnProfiler.RENDER);
         // If we reach max turns, set the winner to the player with the most pawns left
-        if(turn == MAX_TURNS - 1) {
-            int[] playersPawnCount = countPlayersPawn(false);
+        if(turn == BandasState.MAX_TURNS - 1) {
+            int player0PawnCount = state.countPawns(0);
+            int player1PawnCount = state.countPawns(1);
 
-            if(playersPawnCount[0] > playersPawnCount[1]){
+            if(player0PawnCount > player1PawnCount){
                 setWinner(0);
-            } else if(playersPawnCount[1] > playersPawnCount[0]) {
+            } else if(player1PawnCount > player0PawnCount) {
                 setWinner(1);
             } else {
                 gameManager.addToGameSummary("It's a tie !");
@@ -206,274 +255,178 @@ public class Referee extends AbstractReferee {
     }
 
     private void updatePawnCounter() {
+        if(headless) {
+            return;
+        }
         for(Player player : gameManager.getPlayers()) {
             int player_index = player.getIndex();
-            PAWNS_COUNTERS[player_index]
-                    .setText(Integer.toString(
-                            countPlayersPawn(false)[player_index]
-                    ));
+            int pawnCount = state.countPawns(player_index);
+            if(pawnCount != shownPawnCounts[player_index]) {
+                shownPawnCounts[player_index] = pawnCount;
+                pawnsCounters[player_index].setText(Integer.toString(pawnCount));
+            }
         }
     }
 
-    private void handlePlayerOutput(String output, String playerId) {
+    private static int parseDirection(String output) {
         switch(output) {
-            case "UP" :
-                moveUp(playerId);
-                break;
-            case "DOWN":
-                moveDown(playerId);
-                break;
+            case "UP":
+                return BandasState.UP;
             case "RIGHT":
-                moveRight(playerId);
-                break;
+                return BandasState.RIGHT;
+            case "DOWN":
+                return BandasState.DOWN;
             case "LEFT":
-                moveLeft(playerId);
-                break;
+                return BandasState.LEFT;
+            default:
+                return -1;
         }
     }
 
-    private void sendInputs(Player player) {
-        for(int i=0; i<HEIGHT; i++){
-            player.sendInputLine(String.join(" ", Arrays.asList(GRID[i])));
+    private void handlePlayerOutput(int direction, int playerId) {
+        state.move(playerId, direction);
+        profiler.phase(TurnProfiler.RULES);
+        if(headless) {
+            return;
         }
-    }
 
-    private void moveUp(String playerId) {
-        for(int col=0; col<WIDTH; col++) {
-            for(int y=0; y<HEIGHT; y++) {
-                if (GRID[y][col].equals(playerId)) {
-                    singleMoveUp(playerId, y, col);
+        // Move the sprites front first so that a pawn never lands on a sprite still to be moved:
+        // chains only run along a line or a column, so walking the live area in order is enough
+        boolean downward = direction == BandasState.DOWN;
+        boolean rightward = direction == BandasState.RIGHT;
+        for(int i=state.getTop(); i<=state.getBottom(); i++) {
+            int y = downward ? state.getTop() + state.getBottom() - i : i;
+            for(int j=state.getLeft(); j<=state.getRight(); j++) {
+                int x = rightward ? state.getLeft() + state.getRight() - j : j;
+                for(int movedPlayer=0; movedPlayer<2; movedPlayer++) {
+                    if(state.hasMoved(movedPlayer, y, x)) {
+                        movePlayer(movedPlayer, y, x, direction, state.hasFallen(y, x));
+                    }
                 }
             }
         }
-    }
-
-    private boolean singleMoveUp(String playerId, int y, int x) {
-        int nextY = y - 1;
-        if(nextY < 0) { // player moves out of the map
-            movePlayer(playerId, y, x, "UP", true);
-            return true;
-        }
-
-        String aboveCellState = GRID[nextY][x];
-        if(cellHasPlayer(aboveCellState)){
-            singleMoveUp(aboveCellState, y - 1, x);
-            singleMoveUp(playerId, y, x);
-        } else {
-            movePlayer(playerId, y, x, "UP", aboveCellState.equals("x"));
-        }
-
-        return true;
-    }
 
-    private void moveDown(String playerId) {
-        for(int col=0; col<WIDTH; col++) {
-            for(int y=HEIGHT-1; y>=0; y--) {
-                if (GRID[y][col].equals(playerId)) {
-                    singleMoveDown(playerId, y, col);
-                }
+        // A single intermediate state for all the pawns falling this turn
+        if(!fallingPawns.isEmpty()) {
+            graphicEntityModule.commitEntityState(0.7, fallingPawns.toArray(new Sprite[0]));
+            for(Sprite pawn : fallingPawns) {
+                pawn.setAlpha(0);
             }
+            fallingPawns.clear();
         }
+        profiler.phase(TurnProfiler.RENDER);
     }
 
-    private boolean singleMoveDown(String playerId, int y, int x) {
-        int nextY = y + 1;
-        if(nextY > HEIGHT - 1) { // player moves out of the map
-            movePlayer(playerId, y, x, "DOWN", true);
-            return true;
-        }
-
-        String belowCellState = GRID[nextY][x];
-        if(cellHasPlayer(belowCellState)){
-            singleMoveDown(belowCellState, y + 1, x);
-            singleMoveDown(playerId, y, x);
-        } else {
-            movePlayer(playerId, y, x, "DOWN", belowCellState.equals("x"));
-        }
-
-        return true;
-    }
-
-    private void moveRight(String playerId) {
-        for(int y=0; y<HEIGHT; y++) {
-            for(int col=WIDTH-1; col>=0; col--) {
-                if(GRID[y][col].equals(playerId)){
-                    singleMoveRight(playerId, y, col);
-                }
-            }
-        }
-    }
-
-    private boolean singleMoveRight(String playerId, int y, int x) {
-        int nextX = x + 1;
-        if(nextX > WIDTH - 1) { // player moves out of the map
-            movePlayer(playerId, y, x, "RIGHT", true);
-            return true;
-        }
-
-        String rightCellState = GRID[y][nextX];
-        if(cellHasPlayer(rightCellState)) {
-            singleMoveRight(rightCellState, y, x + 1);
-            singleMoveRight(playerId, y, x);
-        } else {
-            movePlayer(playerId, y, x, "RIGHT", rightCellState.equals("x"));
-        }
-
-        return true;
-    }
-
-    private void moveLeft(String playerId) {
-        for(int y=0; y<HEIGHT; y++) {
-            for(int col=0; col<WIDTH; col++) {
-                if(GRID[y][col].equals(playerId)){
-                    singleMoveLeft(playerId, y, col);
-                }
-            }
-        }
-    }
-
-    private boolean singleMoveLeft(String playerId, int y, int x) {
-        int nextX = x - 1;
-        if(nextX < 0) { // player moves out of the map
-            movePlayer(playerId, y, x, "LEFT", true);
-            return true;
-        }
-
-        String leftCellState = GRID[y][nextX];
-        if(cellHasPlayer(leftCellState)) {
-            singleMoveLeft(leftCellState, y, x - 1);
-            singleMoveLeft(playerId, y, x);
-        } else {
-            movePlayer(playerId, y, x, "LEFT", leftCellState.equals("x"));
-        }
-
-        return true;
-    }
-
-    private void findEmptyColumns() {
-        // columns from the left
-        for(int i=0; i<WIDTH; i++) {
-            if(!checkColumn(i)) {
+    private void sendInputs(Player player) {
+        switch(protocol) {
+            case "packed":
+                sendPackedInputs(player);
                 break;
-            }
-        }
-        // columns from the right
-        for(int i=WIDTH-1; i>=0; i--) {
-            if(!checkColumn(i)) {
+            case "delta":
+                sendDeltaInputs(player);
                 break;
-            }
-        }
-    }
-
-    private boolean checkColumn(int columnIndex) {
-        boolean columnToRemove = true;
-        boolean deadColumn = true;
-        for(int j=0; j<HEIGHT; j++) {
-            String cellValue = GRID[j][columnIndex];
-            if(!cellValue.equals("x")) {
-                deadColumn = false;
-            }
-            if(cellHasPlayer(cellValue)) {
-                columnToRemove = false;
+            default:
+                sendLineInputs(player);
                 break;
-            }
         }
-        if(columnToRemove) {
-            removeColumn(columnIndex);
-        } else if(!deadColumn) { // Player(s) found on the line / col
-            return false;
-        }
-
-        return true;
     }
 
-    private void removeColumn(int columnIndex) {
-        // TODO: Animation
-        for(int i=0; i<HEIGHT; i++) {
-            Sprite tile = TILES[i][columnIndex];
-            tile.setAlpha(0);
-            removeTile(i, columnIndex);
+    private void sendLineInputs(Player player) {
+        for(int i=0; i<height; i++){
+            if(state.isLineChanged(i)) {
+                lines[i] = state.line(i);
+            }
+            player.sendInputLine(lines[i]);
         }
+        state.clearChanges();
     }
 
-    private void findEmptyLines() {
-        // lines from the top
-        for(int i=0; i<HEIGHT; i++) {
-            if(!checkline(i)) {
-                break;
-            }
-        }
-        // lines from the bottom
-        for(int i=HEIGHT-1; i>=0; i--) {
-            if(!checkline(i)) {
+    /**
+     * Opponent's last move, then the whole board on a single line, line after line.
+     */
+    private void sendPackedInputs(Player player) {
+        for(int i=0; i<height; i++){
+            if(state.isLineChanged(i)) {
+                packedLine = state.packed();
                 break;
             }
         }
+        state.clearChanges();
+        player.sendInputLine(lastMove);
+        player.sendInputLine(packedLine);
     }
 
-    private boolean checkline(int lineIndex) {
-        boolean lineToRemove = true;
-        boolean deadLine = true;
-        for(int j=0; j<WIDTH; j++) {
-            String cellValue = GRID[lineIndex][j];
-            if(!cellValue.equals("x")) {
-                deadLine = false;
-            }
-            if(cellHasPlayer(cellValue)) {
-                lineToRemove = false;
-                break;
+    /**
+     * Opponent's last move, then on a single line the number of cells changed since the
+     * player's previous turn followed by each cell's line, column and value.
+     * Every cell is sent on the first turn.
+     */
+    private void sendDeltaInputs(Player player) {
+        // Every line is reported as changed at first, so the first turn of each player sends every cell
+        for(int y=0; y<height; y++) {
+            if(state.isLineChanged(y)) {
+                unsentLines[0][y >>> 6] |= 1L << y;
+                unsentLines[1][y >>> 6] |= 1L << y;
             }
         }
-        if(lineToRemove) {
-            removeLine(lineIndex);
-        } else if(!deadLine) { // Player(s) found on the line / col
-            return false;
+        state.clearChanges();
+
+        int playerIndex = player.getIndex();
+        if(sentCells[playerIndex] == null) {
+            sentCells[playerIndex] = new char[width * height];
+        }
+        char[] sent = sentCells[playerIndex];
+        long[] unsent = unsentLines[playerIndex];
+
+        int changed = 0;
+        deltaCells.setLength(0);
+        for(int word=0; word<unsent.length; word++) {
+            for(long bits=unsent[word]; bits!=0; bits&=bits-1) {
+                int y = (word << 6) + Long.numberOfTrailingZeros(bits);
+                // A line may have changed back to what the player last saw
+                for(int x=0; x<width; x++) {
+                    char cell = BandasState.cellChar(state.getCell(y, x));
+                    if(sent[y * width + x] != cell) {
+                        sent[y * width + x] = cell;
+                        changed++;
+                        deltaCells.append(' ').append(y)
+                                .append(' ').append(x)
+                                .append(' ').append(cell);
+                    }
+                }
+            }
+            unsent[word] = 0;
         }
-
-        return true;
+        deltaLine.setLength(0);
+        deltaLine.append(changed).append(deltaCells);
+        player.sendInputLine(lastMove);
+        player.sendInputLine(deltaLine.toString());
     }
 
-    private void removeLine(int lineIndex) {
-        // TODO: Animation
-        for(int i=0; i<WIDTH; i++) {
-            Sprite tile = TILES[lineIndex][i];
-            tile.setAlpha(0);
-            removeTile(lineIndex, i);
+    private void trimEdges() {
+        int top = state.getTop();
+        int bottom = state.getBottom();
+        int left = state.getLeft();
+        int right = state.getRight();
+        boolean trimmed = state.trimEdges();
+        profiler.phase(TurnProfiler.TRIM);
+        if(!trimmed || headless) {
+            return;
         }
-    }
-
-    private void removeTile(int y, int x) {
-        GRID[y][x] = DEAD_TILE_CHAR;
-    }
-
-    private int[] countPlayersPawn(boolean breakIfInProgress) {
-        int playerA = 0;
-        int playerB = 0;
-
-        for(int y=0; y<HEIGHT; y++) {
-            for(int col=0; col<WIDTH; col++) {
-                String cellState = GRID[y][col];
-                if(cellState.equals("0")){
-                    playerA++;
-                } else if(cellState.equals("1")){
-                    playerB++;
-                }
-
-                if(breakIfInProgress && playerA > 0 && playerB > 0) { // Game still in progress
-                    break;
+        // TODO: Animation
+        for(int i=top; i<=bottom; i++) {
+            for(int j=left; j<=right; j++) {
+                if(i < state.getTop() || i > state.getBottom() || j < state.getLeft() || j > state.getRight()) {
+                    tiles[i][j].setAlpha(0);
                 }
             }
         }
-
-        return new int[] {playerA, playerB};
     }
 
     private boolean checkWinner() {
-        int[] playersPawnCount = countPlayersPawn(true);
-
-        if(playersPawnCount[0] == 0){
+        if(state.countPawns(0) == 0){
             setWinner(1);
-        } else if(playersPawnCount[1] == 0) {
+        } else if(state.countPawns(1) == 0) {
             setWinner(0);
         } else {
             return false;
@@ -485,60 +438,62 @@ public class Referee extends AbstractReferee {
     private void setWinner(int playerId) {
         Player winner = gameManager.getPlayer(playerId);
 
-        graphicEntityModule.createText("WINNER")
-                .setX(60 + playerId * 1400)
-                .setY(210 + 100 * (playerId / 2))
-                .setZIndex(20)
-                .setFontSize(110)
-                .setFillColor(0xffff00)
-                .setRotation(-0.52)
-                .setAnchor(0);
+        if(!headless) {
+            graphicEntityModule.createText("WINNER")
+                    .setX(60 + playerId * 1400)
+                    .setY(210 + 100 * (playerId / 2))
+                    .setZIndex(20)
+                    .setFontSize(110)
+                    .setFillColor(0xffff00)
+                    .setRotation(-0.52)
+                    .setAnchor(0);
+        }
         gameManager.addToGameSummary(GameManager.formatSuccessMessage(
                 winner.getNicknameToken() + " won!"));
         winner.setScore(1);
         gameManager.endGame();
     }
 
-    private boolean cellHasPlayer(String cellValue) {
-        // Check if a grid cell has a player on it
-        return cellValue.equals("0") || cellValue.equals("1");
-    }
-
-    private void movePlayer(String playerId, int y, int x, String direction, boolean removeAfter) {
-        Sprite pawn = PAWNS[y][x];
+    private void movePlayer(int playerId, int y, int x, int direction, boolean removeAfter) {
+        Sprite pawn = pawns[y][x];
+        int[] dirNextPos = NEXT_POS[direction];
 
-        switch (direction) {
-            case "UP":
-                pawn.setY(pawn.getY() - CELL_SIZE);
-                break;
-            case "DOWN":
-                pawn.setY(pawn.getY() + CELL_SIZE);
-                break;
-            case "RIGHT":
-                pawn.setX(pawn.getX() + CELL_SIZE);
-                break;
-            case "LEFT":
-                pawn.setX(pawn.getX() - CELL_SIZE);
-                break;
+        if(dirNextPos[0] != 0) {
+            pawn.setY(pawn.getY() + dirNextPos[0] * cellSize);
+        } else {
+            pawn.setX(pawn.getX() + dirNextPos[1] * cellSize);
         }
 
         if(removeAfter) {
-            pawn.setImage(String.format("pawn_%s_hurt.png", playerId));
-            graphicEntityModule.commitEntityState(0.7, pawn);
-            pawn.setAlpha(0);
+            pawn.setImage(String.format("pawn_%d_hurt.png", playerId));
+            fallingPawns.add(pawn);
         } else {
-            int[] dirNextPos = NEXT_POS.get(direction);
-            int[] nextPosCoord = {y+dirNextPos[0], x+dirNextPos[1]};
-            GRID[nextPosCoord[0]][nextPosCoord[1]] = playerId;
-            PAWNS[nextPosCoord[0]][nextPosCoord[1]] = pawn;
+            pawns[y+dirNextPos[0]][x+dirNextPos[1]] = pawn;
+        }
+        pawns[y][x] = null;
+    }
+
+    @Override
+    public void onEnd() {
+        gameManager.putMetadata("turns", Integer.toString(turns));
+        if(timings) {
+            gameManager.putMetadata("timings", profiler.toJson());
+        }
+        if(replayFile != null) {
+            Replay replay = new Replay(gameManager.getSeed(), width, height, layout, moves, moveCount, end,
+                    gameManager.getPlayer(0).getScore(), gameManager.getPlayer(1).getScore());
+            try {
+                Replay.append(Paths.get(replayFile), replay);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         }
-        GRID[y][x] = EMPTY_TILE_CHAR;
-        PAWNS[y][x] = null;
     }
 
     private void deactivatePlayer(Player player, String reason) {
         player.deactivate(reason);
         player.setScore(-1);
+        end = Replay.END_DEACTIVATED;
         gameManager.endGame();
     }
 }
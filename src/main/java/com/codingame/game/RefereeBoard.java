@@ -0,0 +1,132 @@
+package com.codingame.game;
+
+/**
+ * Rules engine as seen by the referee. The default 8x8 board is played on the single-long
+ * bitboards of BandasState, every other size on BandasBoard.
+ */
+interface RefereeBoard {
+    static RefereeBoard fromSeed(int width, int height, long seed, StartingPositions.Layout layout) {
+        if (width == BandasState.WIDTH && height == BandasState.HEIGHT) {
+            return new StateBoard(BandasState.fromSeed(seed, layout));
+        }
+        return BandasBoard.fromSeed(width, height, seed, layout);
+    }
+
+    void move(int playerId, int direction);
+
+    /**
+     * Returns whether any tile died.
+     */
+    boolean trimEdges();
+
+    int countPawns(int playerId);
+
+    int getTop();
+
+    int getBottom();
+
+    int getLeft();
+
+    int getRight();
+
+    int getCell(int y, int x);
+
+    boolean hasMoved(int playerId, int y, int x);
+
+    boolean hasFallen(int y, int x);
+
+    boolean isLineChanged(int y);
+
+    void clearChanges();
+
+    String line(int y);
+
+    String packed();
+
+    /**
+     * BandasState behind the referee's interface.
+     */
+    final class StateBoard implements RefereeBoard {
+        private static final long FIRST_LINE = 0xFFL;
+
+        private final BandasState state;
+        // Cells changed since the last call to clearChanges, gathered from the state
+        private long changes;
+
+        StateBoard(BandasState state) {
+            this.state = state;
+        }
+
+        @Override
+        public void move(int playerId, int direction) {
+            state.move(playerId, direction);
+        }
+
+        @Override
+        public boolean trimEdges() {
+            return state.trimEdges() != 0;
+        }
+
+        @Override
+        public int countPawns(int playerId) {
+            return state.countPawns(playerId);
+        }
+
+        @Override
+        public int getTop() {
+            return state.getTop();
+        }
+
+        @Override
+        public int getBottom() {
+            return state.getBottom();
+        }
+
+        @Override
+        public int getLeft() {
+            return state.getLeft();
+        }
+
+        @Override
+        public int getRight() {
+            return state.getRight();
+        }
+
+        @Override
+        public int getCell(int y, int x) {
+            return state.getCell(y, x);
+        }
+
+        @Override
+        public boolean hasMoved(int playerId, int y, int x) {
+            return (state.getMoved(playerId) & BandasState.bit(y, x)) != 0;
+        }
+
+        @Override
+        public boolean hasFallen(int y, int x) {
+            return (state.getFallen() & BandasState.bit(y, x)) != 0;
+        }
+
+        @Override
+        public boolean isLineChanged(int y) {
+            changes |= state.takeChanges();
+            return (changes & (FIRST_LINE << (y * BandasState.WIDTH))) != 0;
+        }
+
+        @Override
+        public void clearChanges() {
+            state.takeChanges();
+            changes = 0;
+        }
+
+        @Override
+        public String line(int y) {
+            return state.line(y);
+        }
+
+        @Override
+        public String packed() {
+            return state.packed();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.codingame.game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compact binary replay of a game. The seed and the board size fix the starting position,
+ * so with 2 bits per move a whole game fits in about 70 bytes.
+ *
+ * A record is its length on 4 bytes, then the version, the seed, the board width and height,
+ * the starting position layout, the number of moves, how the game ended, the score of each player
+ * and the moves, 4 per byte starting with the low bits. Version 1 records, from before layouts,
+ * have no layout byte. Replay files are records one after the other, see ReplayFile.
+ */
+public class Replay {
+    // The game ended on a win, a tie or the turn limit
+    public static final int END_NORMAL = 0;
+    // The player to move after the last recorded move was deactivated: invalid output, no output or timeout
+    public static final int END_DEACTIVATED = 1;
+
+    static final int VERSION = 2;
+    // Length prefix, then version, seed, width, height, layout, move count, end and scores
+    static final int HEADER_SIZE = 4 + 1 + 8 + 2 + 2 + 1 + 2 + 1 + 2;
+
+    // Replays from concurrent games of the same JVM go to the same files
+    private static final Object APPEND_LOCK = new Object();
+
+    private final long seed;
+    private final int width;
+    private final int height;
+    private final StartingPositions.Layout layout;
+    private final byte[] moves;
+    private final int moveCount;
+    private final int end;
+    private final int[] scores;
+
+    /**
+     * Moves are the directions played, in BandasState.UP to LEFT order, from the first turn.
+     */
+    public Replay(long seed, int width, int height, StartingPositions.Layout layout,
+                  byte[] moves, int moveCount, int end, int score0, int score1) {
+        this.seed = seed;
+        this.width = width;
+        this.height = height;
+        this.layout = layout;
+        this.moves = new byte[moveCount];
+        System.arraycopy(moves, 0, this.moves, 0, moveCount);
+        this.moveCount = moveCount;
+        this.end = end;
+        this.scores = new int[] {score0, score1};
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public StartingPositions.Layout getLayout() {
+        return layout;
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    public int getMove(int turn) {
+        return moves[turn];
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    public int getScore(int playerId) {
+        return scores[playerId];
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + (moveCount + 3) / 4);
+        buffer.putInt(buffer.capacity() - 4)
+                .put((byte) VERSION)
+                .putLong(seed)
+                .putShort((short) width)
+                .putShort((short) height)
+                .put((byte) layout.ordinal())
+                .putShort((short) moveCount)
+                .put((byte) end)
+                .put((byte) scores[0])
+                .put((byte) scores[1]);
+        for(int i=0; i<moveCount; i+=4) {
+            int packed = 0;
+            for(int j=i; j<Math.min(i + 4, moveCount); j++) {
+                packed |= (moves[j] & 3) << (2 * (j - i));
+            }
+            buffer.put((byte) packed);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Reads the record starting at the buffer position, length prefix included.
+     */
+    public static Replay fromBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        int version = buffer.get();
+        if(version < 1 || version > VERSION || length < HEADER_SIZE - 4 - (version == 1 ? 1 : 0)) {
+            throw new IllegalArgumentException("Not a replay record, version " + version + ", length " + length);
+        }
+        long seed = buffer.getLong();
+        int width = buffer.getShort();
+        int height = buffer.getShort();
+        StartingPositions.Layout layout = version == 1
+                ? StartingPositions.Layout.COMPATIBLE : StartingPositions.Layout.values()[buffer.get()];
+        int moveCount = buffer.getShort();
+        int end = buffer.get();
+        int score0 = buffer.get();
+        int score1 = buffer.get();
+        byte[] moves = new byte[moveCount];
+        for(int i=0; i<moveCount; i+=4) {
+            int packed = buffer.get();
+            for(int j=i; j<Math.min(i + 4, moveCount); j++) {
+                moves[j] = (byte) ((packed >>> (2 * (j - i))) & 3);
+            }
+        }
+        return new Replay(seed, width, height, layout, moves, moveCount, end, score0, score1);
+    }
+
+    /**
+     * Appends the replay to the file, creating it if needed. The record is written in a single
+     * append so that processes sharing a file on a local disk do not interleave records.
+     */
+    public static void append(Path file, Replay replay) throws IOException {
+        byte[] record = replay.toBytes();
+        synchronized(APPEND_LOCK) {
+            Files.write(file, record, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+    }
+}
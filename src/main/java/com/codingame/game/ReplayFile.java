@@ -0,0 +1,89 @@
+package com.codingame.game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Random access to the games of a replay file. The index is built when opening the file by
+ * hopping from one length prefix to the next, without decoding any record.
+ * A truncated last record, as left by a crash while writing, is ignored, and a negative length
+ * prefix, which only corruption leaves, is an IOException.
+ */
+public class ReplayFile implements Closeable {
+    private final FileChannel channel;
+    private long[] offsets = new long[1024];
+    private int size;
+    private final ByteBuffer header = ByteBuffer.allocate(4);
+
+    public ReplayFile(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            index();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void index() throws IOException {
+        long length = channel.size();
+        long offset = 0;
+        while(offset + 4 <= length) {
+            header.clear();
+            readFully(header, offset);
+            int recordLength = header.getInt(0);
+            // Appends never write a negative length, unlike a truncation
+            if(recordLength < 0) {
+                throw new IOException("Corrupt replay file: record length " + recordLength + " at offset " + offset);
+            }
+            long next = offset + 4 + recordLength;
+            if(next > length) {
+                break;
+            }
+            if(size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            offsets[size++] = offset;
+            offset = next;
+        }
+    }
+
+    /**
+     * Number of complete games in the file.
+     */
+    public int size() {
+        return size;
+    }
+
+    public long getOffset(int game) {
+        return offsets[game];
+    }
+
+    public Replay get(int game) throws IOException {
+        header.clear();
+        readFully(header, offsets[game]);
+        ByteBuffer record = ByteBuffer.allocate(4 + header.getInt(0));
+        readFully(record, offsets[game]);
+        record.flip();
+        return Replay.fromBytes(record);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if(read < 0) {
+                throw new IOException("Unexpected end of replay file at " + position);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,198 @@
+package com.codingame.game;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * Random starting positions. The center square, half the board wide and high, is shared evenly,
+ * then player 0 gets half of the board at random and all remaining tiles go to player 1.
+ * Every tile starts with a pawn, so a starting position is the set of player 0 pawns, stored
+ * like BandasBoard lines: (width + 63) / 64 longs per line, bit x of a line for column x.
+ *
+ * Generated positions are kept in a least recently used cache bounded by its size in longs,
+ * so that tournaments playing the same seeds over and over only generate each position once.
+ */
+public final class StartingPositions {
+    public enum Layout {
+        // Same positions as the original referee for a given seed: pawns are placed one by one
+        // at random cells, drawing again when the cell is taken
+        COMPATIBLE,
+        // Partial Fisher-Yates shuffles of the center square and of the rest of the board,
+        // a single draw per pawn but different positions for a given seed
+        SHUFFLE
+    }
+
+    // 32 MB, half a million 8x8 positions or 256 positions of 1024x1024
+    public static final long DEFAULT_CACHE_SIZE = 1L << 22;
+
+    private static final Map<Key, long[]> CACHE = new LinkedHashMap<>(1024, 0.75f, true);
+    private static long cacheSize = DEFAULT_CACHE_SIZE;
+    private static long cachedLongs;
+
+    private StartingPositions() {
+    }
+
+    /**
+     * Player 0 pawns of the starting position, from the cache when possible.
+     * The returned array is shared and must not be modified.
+     */
+    public static long[] get(Layout layout, int width, int height, long seed) {
+        Key key = new Key(layout, width, height, seed);
+        synchronized(CACHE) {
+            long[] player0 = CACHE.get(key);
+            if(player0 != null) {
+                return player0;
+            }
+        }
+        long[] player0 = generate(layout, width, height, seed);
+        synchronized(CACHE) {
+            if(player0.length <= cacheSize && CACHE.put(key, player0) == null) {
+                cachedLongs += player0.length;
+                evict();
+            }
+        }
+        return player0;
+    }
+
+    /**
+     * Sets the maximum number of longs kept in the cache, 0 to disable it.
+     */
+    public static void setCacheSize(long longs) {
+        synchronized(CACHE) {
+            cacheSize = longs;
+            evict();
+        }
+    }
+
+    private static void evict() {
+        Iterator<long[]> eldest = CACHE.values().iterator();
+        while(cachedLongs > cacheSize && eldest.hasNext()) {
+            cachedLongs -= eldest.next().length;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Player 0 pawns of a new starting position, without going through the cache.
+     */
+    public static long[] generate(Layout layout, int width, int height, long seed) {
+        long[] player0 = new long[((width + 63) >>> 6) * height];
+        if(layout == Layout.SHUFFLE) {
+            shuffle(player0, width, height, seed);
+        } else {
+            addPawns(player0, width, height, seed);
+        }
+        return player0;
+    }
+
+    /**
+     * Draws exactly like the original referee. After the center square is shared out every one
+     * of its tiles is taken, and outside of it only player 0 pawns take tiles, so a single
+     * bitboard test tells whether a cell is free. At most 5/8 of the board is ever taken,
+     * so a pawn takes less than 3 draws on average.
+     */
+    private static void addPawns(long[] player0, int width, int height, long seed) {
+        Random rng = new Random(seed);
+        int words = (width + 63) >>> 6;
+        int pawnsPerPlayer = width * height / 2;
+        int centerTop = height / 4;
+        int centerLeft = width / 4;
+        int centerHeight = height / 2;
+        int centerWidth = width / 2;
+        int pawnsInCenterSquarePerPlayer = centerHeight * centerWidth / 2;
+        // Balance center square
+        for(int pawn=0; pawn<pawnsInCenterSquarePerPlayer; pawn++) {
+            int i, j;
+            do {
+                i = rng.nextInt(centerHeight) + centerTop;
+                j = rng.nextInt(centerWidth) + centerLeft;
+            } while((player0[i * words + (j >>> 6)] & (1L << j)) != 0);
+            player0[i * words + (j >>> 6)] |= 1L << j;
+        }
+        // Place all pawns for player 0 randomly, the center square being full
+        for(int pawn=0; pawn<pawnsPerPlayer-pawnsInCenterSquarePerPlayer; pawn++) {
+            int i, j;
+            do {
+                i = rng.nextInt(height);
+                j = rng.nextInt(width);
+            } while((player0[i * words + (j >>> 6)] & (1L << j)) != 0
+                    || (i >= centerTop && i < centerTop + centerHeight && j >= centerLeft && j < centerLeft + centerWidth));
+            player0[i * words + (j >>> 6)] |= 1L << j;
+        }
+    }
+
+    private static void shuffle(long[] player0, int width, int height, long seed) {
+        SplittableRandom rng = new SplittableRandom(seed);
+        int words = (width + 63) >>> 6;
+        int centerTop = height / 4;
+        int centerLeft = width / 4;
+        int centerHeight = height / 2;
+        int centerWidth = width / 2;
+        int centerCells = centerHeight * centerWidth;
+        int[] center = new int[centerCells];
+        int[] outside = new int[width * height - centerCells];
+        int centerCount = 0;
+        int outsideCount = 0;
+        for(int i=0; i<height; i++) {
+            for(int j=0; j<width; j++) {
+                boolean inCenter = i >= centerTop && i < centerTop + centerHeight
+                        && j >= centerLeft && j < centerLeft + centerWidth;
+                if(inCenter) {
+                    center[centerCount++] = i * width + j;
+                } else {
+                    outside[outsideCount++] = i * width + j;
+                }
+            }
+        }
+        int pawnsInCenterSquarePerPlayer = centerCells / 2;
+        pick(center, pawnsInCenterSquarePerPlayer, rng, player0, width, words);
+        pick(outside, width * height / 2 - pawnsInCenterSquarePerPlayer, rng, player0, width, words);
+    }
+
+    /**
+     * Gives player 0 the first cells of a partial Fisher-Yates shuffle.
+     */
+    private static void pick(int[] cells, int count, SplittableRandom rng, long[] player0, int width, int words) {
+        for(int k=0; k<count; k++) {
+            int swap = k + rng.nextInt(cells.length - k);
+            int cell = cells[swap];
+            cells[swap] = cells[k];
+            cells[k] = cell;
+            int i = cell / width;
+            int j = cell % width;
+            player0[i * words + (j >>> 6)] |= 1L << j;
+        }
+    }
+
+    private static final class Key {
+        private final Layout layout;
+        private final int width;
+        private final int height;
+        private final long seed;
+
+        Key(Layout layout, int width, int height, long seed) {
+            this.layout = layout;
+            this.width = width;
+            this.height = height;
+            this.seed = seed;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return layout == other.layout && width == other.width && height == other.height && seed == other.seed;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = Long.hashCode(seed * 0x9E3779B97F4A7C15L);
+            return 31 * (31 * (31 * hash + layout.ordinal()) + width) + height;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.codingame.game;
+
+/**
+ * The 8 rotations and reflections of the 8x8 board, under which the rules are invariant once
+ * the directions are remapped, and canonical position keys built on them.
+ *
+ * A canonical key holds the pawns of the player to move and those of the opponent rather than
+ * those of player 0 and player 1, and whether the player to move is player 1. Keys are equal when
+ * both the canonical position and the player to move are, as the players are not quite alike:
+ * player 1 wins when a move leaves no pawn to either player. With the current rules no move does,
+ * a pawn pushing another always lands on the tile it leaves, so callers may fold the two players
+ * together with hashIgnoringPlayer and equalsIgnoringPlayer, knowing they rely on this.
+ */
+public final class Symmetry {
+    public static final int IDENTITY = 0;
+    // Clockwise rotations
+    public static final int ROTATE_90 = 1;
+    public static final int ROTATE_180 = 2;
+    public static final int ROTATE_270 = 3;
+    // Reflections: top and bottom swapped, left and right swapped, and across each diagonal
+    public static final int FLIP_VERTICAL = 4;
+    public static final int FLIP_HORIZONTAL = 5;
+    public static final int TRANSPOSE = 6;
+    public static final int ANTI_TRANSPOSE = 7;
+    public static final int COUNT = 8;
+
+    // Direction played on the transformed board for each symmetry and direction
+    private static final int[][] DIRECTIONS = {
+            {BandasState.UP, BandasState.RIGHT, BandasState.DOWN, BandasState.LEFT},
+            {BandasState.RIGHT, BandasState.DOWN, BandasState.LEFT, BandasState.UP},
+            {BandasState.DOWN, BandasState.LEFT, BandasState.UP, BandasState.RIGHT},
+            {BandasState.LEFT, BandasState.UP, BandasState.RIGHT, BandasState.DOWN},
+            {BandasState.DOWN, BandasState.RIGHT, BandasState.UP, BandasState.LEFT},
+            {BandasState.UP, BandasState.LEFT, BandasState.DOWN, BandasState.RIGHT},
+            {BandasState.LEFT, BandasState.DOWN, BandasState.RIGHT, BandasState.UP},
+            {BandasState.RIGHT, BandasState.UP, BandasState.LEFT, BandasState.DOWN},
+    };
+    // Mixed into the hash of keys with player 1 to move
+    private static final long SWAPPED_HASH = 0xD6E8FEB86659FD93L;
+    private static final int[] INVERSES = {IDENTITY, ROTATE_270, ROTATE_180, ROTATE_90,
+            FLIP_VERTICAL, FLIP_HORIZONTAL, TRANSPOSE, ANTI_TRANSPOSE};
+
+    private Symmetry() {
+    }
+
+    /**
+     * Bitboard of the transformed board, bit (y * WIDTH + x) standing for line y, column x as in BandasState.
+     */
+    public static long apply(int symmetry, long board) {
+        switch(symmetry) {
+            case IDENTITY:
+                return board;
+            case ROTATE_90:
+                return flipHorizontal(transpose(board));
+            case ROTATE_180:
+                return Long.reverse(board);
+            case ROTATE_270:
+                return Long.reverseBytes(transpose(board));
+            case FLIP_VERTICAL:
+                return Long.reverseBytes(board);
+            case FLIP_HORIZONTAL:
+                return flipHorizontal(board);
+            case TRANSPOSE:
+                return transpose(board);
+            case ANTI_TRANSPOSE:
+                return Long.reverse(transpose(board));
+            default:
+                throw new IllegalArgumentException("Unknown symmetry " + symmetry);
+        }
+    }
+
+    /**
+     * Direction on the transformed board matching the given direction on the original board.
+     */
+    public static int applyToDirection(int symmetry, int direction) {
+        return DIRECTIONS[symmetry][direction];
+    }
+
+    public static int inverse(int symmetry) {
+        return INVERSES[symmetry];
+    }
+
+    /**
+     * Line y becomes column y.
+     */
+    private static long transpose(long board) {
+        long t = 0x0F0F0F0F00000000L & (board ^ (board << 28));
+        board ^= t ^ (t >>> 28);
+        t = 0x3333000033330000L & (board ^ (board << 14));
+        board ^= t ^ (t >>> 14);
+        t = 0x5500550055005500L & (board ^ (board << 7));
+        return board ^ t ^ (t >>> 7);
+    }
+
+    private static long flipHorizontal(long board) {
+        board = ((board >>> 1) & 0x5555555555555555L) | ((board & 0x5555555555555555L) << 1);
+        board = ((board >>> 2) & 0x3333333333333333L) | ((board & 0x3333333333333333L) << 2);
+        return ((board >>> 4) & 0x0F0F0F0F0F0F0F0FL) | ((board & 0x0F0F0F0F0F0F0F0FL) << 4);
+    }
+
+    /**
+     * Canonical form of a position: the smallest of its 8 transforms, as the pawns of the player
+     * to move, the pawns of the opponent and the live tiles, with the symmetry leading to it.
+     * Instances are meant to be reused by canonicalize, use copy to keep one, for instance as a map key.
+     */
+    public static final class Key {
+        private long own;
+        private long opponent;
+        private long alive;
+        private int symmetry;
+        private boolean swapped;
+
+        public long getOwn() {
+            return own;
+        }
+
+        public long getOpponent() {
+            return opponent;
+        }
+
+        public long getAlive() {
+            return alive;
+        }
+
+        /**
+         * Symmetry mapping the position to the canonical one.
+         */
+        public int getSymmetry() {
+            return symmetry;
+        }
+
+        /**
+         * Whether the player to move is player 1, whose pawns are then the own pawns of the key.
+         */
+        public boolean isSwapped() {
+            return swapped;
+        }
+
+        /**
+         * Direction of the canonical position matching a direction of the position.
+         */
+        public int toCanonical(int direction) {
+            return applyToDirection(symmetry, direction);
+        }
+
+        /**
+         * Direction of the position matching a direction of the canonical position, to play a move found there.
+         */
+        public int fromCanonical(int direction) {
+            return applyToDirection(inverse(symmetry), direction);
+        }
+
+        /**
+         * 64-bit hash of the canonical position and the player to move, the same for the 8 variants of a position.
+         */
+        public long hash() {
+            long h = hashIgnoringPlayer();
+            return swapped ? (h ^ SWAPPED_HASH) * 0x9E3779B97F4A7C15L : h;
+        }
+
+        /**
+         * 64-bit hash of the canonical position alone, the same for all 16 variants of a position.
+         */
+        public long hashIgnoringPlayer() {
+            long h = own * 0x9E3779B97F4A7C15L;
+            h = (h ^ (h >>> 32) ^ opponent) * 0xBF58476D1CE4E5B9L;
+            h = (h ^ (h >>> 29) ^ alive) * 0x94D049BB133111EBL;
+            return h ^ (h >>> 31);
+        }
+
+        /**
+         * Whether the canonical positions are equal, whichever player is to move in each.
+         */
+        public boolean equalsIgnoringPlayer(Key key) {
+            return own == key.own && opponent == key.opponent && alive == key.alive;
+        }
+
+        public Key copy() {
+            Key key = new Key();
+            key.set(own, opponent, alive, symmetry);
+            key.swapped = swapped;
+            return key;
+        }
+
+        private void set(long own, long opponent, long alive, int symmetry) {
+            this.own = own;
+            this.opponent = opponent;
+            this.alive = alive;
+            this.symmetry = symmetry;
+        }
+
+        /**
+         * Keys are equal when their canonical positions and players to move are, whatever the symmetry they come from.
+         */
+        @Override
+        public boolean equals(Object other) {
+            if(!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return equalsIgnoringPlayer(key) && swapped == key.swapped;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hash());
+        }
+    }
+
+    /**
+     * Fills the key with the canonical form of the state with the given player to move, without allocating.
+     */
+    public static Key canonicalize(BandasState state, int playerId, Key key) {
+        return canonicalize(state.getPawns(playerId), state.getPawns(1 - playerId), state.getAlive(), playerId, key);
+    }
+
+    public static Key canonicalize(long own, long opponent, long alive, int playerId, Key key) {
+        key.set(own, opponent, alive, IDENTITY);
+        key.swapped = playerId == 1;
+        for(int symmetry=ROTATE_90; symmetry<COUNT; symmetry++) {
+            long transformedOwn = apply(symmetry, own);
+            long transformedOpponent = apply(symmetry, opponent);
+            long transformedAlive = apply(symmetry, alive);
+            if(isSmaller(transformedOwn, transformedOpponent, transformedAlive, key)) {
+                key.set(transformedOwn, transformedOpponent, transformedAlive, symmetry);
+            }
+        }
+        return key;
+    }
+
+    private static boolean isSmaller(long own, long opponent, long alive, Key key) {
+        if(own != key.own) {
+            return Long.compareUnsigned(own, key.own) < 0;
+        }
+        if(opponent != key.opponent) {
+            return Long.compareUnsigned(opponent, key.opponent) < 0;
+        }
+        return Long.compareUnsigned(alive, key.alive) < 0;
+    }
+}
@@ -0,0 +1,345 @@
+package com.codingame.game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Endgame tablebase: the outcome under perfect play of every position with up to a given number
+ * of pawns on a live area up to a given size, solved by retrograde analysis.
+ *
+ * Edge trimming keeps the live area on the bounding box of the pawns, and pawns leaving it fall
+ * whether they reach a dead tile or the side of the board, so a position is the content of its live
+ * area and the player to move, wherever the area lies on the board. Positions are indexed by the
+ * size of the area, the number of pawns, the rank of the set of occupied cells and the owner of each
+ * pawn, so that a probe reads a single byte of the memory-mapped file.
+ *
+ * Outcomes ignore the turn limit: a draw means neither player can force the capture of all the
+ * opponent's pawns, the game is then decided by pawn counts at the last turn. Callers compare the
+ * number of plies of a win or a loss with the turns left.
+ */
+public class Tablebase implements Closeable {
+    // Position not in the table: area too large, too many pawns or game already over
+    public static final int UNKNOWN = 0;
+    // Neither player can force a win
+    public static final int DRAW = 1;
+
+    static final int VERSION = 1;
+    // Version, maximum width, height and pawn count
+    static final int HEADER_SIZE = 4;
+    // Longest win or loss a byte can hold, in plies
+    private static final int MAX_PLIES = 127;
+    // Successors of moves ending the game, apart from the -1 of positions missing from the layout
+    private static final int MOVER_WINS = -2;
+    private static final int MOVER_LOSES = -3;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer values;
+    private final Layout layout;
+
+    private Tablebase(FileChannel channel, MappedByteBuffer values, Layout layout) {
+        this.channel = channel;
+        this.values = values;
+        this.layout = layout;
+    }
+
+    /**
+     * Maps the tablebase file, without reading it: pages are loaded by the probes.
+     */
+    public static Tablebase open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            MappedByteBuffer values = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if(channel.size() < HEADER_SIZE || values.get(0) != VERSION) {
+                throw new IOException("Not a tablebase file: " + file);
+            }
+            Layout layout = new Layout(values.get(1), values.get(2), values.get(3));
+            if(channel.size() != HEADER_SIZE + layout.size) {
+                throw new IOException("Truncated tablebase file: " + file);
+            }
+            return new Tablebase(channel, values, layout);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int getMaxWidth() {
+        return layout.maxWidth;
+    }
+
+    public int getMaxHeight() {
+        return layout.maxHeight;
+    }
+
+    public int getMaxPawns() {
+        return layout.maxPawns;
+    }
+
+    /**
+     * Outcome for the given player to move, UNKNOWN, DRAW or a win or loss, see isWin, isLoss and plies.
+     * The state must have been trimmed, as it is at the start of every turn.
+     */
+    public int probe(BandasState state, int playerId) {
+        long index = layout.indexOf(state, playerId);
+        return index < 0 ? UNKNOWN : values.get((int) (HEADER_SIZE + index)) & 0xFF;
+    }
+
+    public static boolean isWin(int value) {
+        return value >= 2 && value % 2 == 0;
+    }
+
+    public static boolean isLoss(int value) {
+        return value >= 2 && value % 2 == 1;
+    }
+
+    /**
+     * Number of plies until the end of the game for a win or a loss, the last move included.
+     */
+    public static int plies(int value) {
+        return value / 2;
+    }
+
+    private static int win(int plies) {
+        return 2 * plies;
+    }
+
+    private static int loss(int plies) {
+        return 2 * plies + 1;
+    }
+
+    /**
+     * Solves every position with 2 to maxPawns pawns on live areas up to maxWidth x maxHeight
+     * and writes the tablebase file. Returns the number of positions of each outcome:
+     * wins, losses and draws for the player to move.
+     */
+    public static long[] generate(int maxWidth, int maxHeight, int maxPawns, Path file) throws IOException {
+        if(maxWidth < 1 || maxWidth > BandasState.WIDTH || maxHeight < 1 || maxHeight > BandasState.HEIGHT
+                || maxPawns < 2 || maxPawns > maxWidth * maxHeight) {
+            throw new IllegalArgumentException("Invalid tablebase size " + maxWidth + "x" + maxHeight
+                    + " with " + maxPawns + " pawns");
+        }
+        Layout layout = new Layout(maxWidth, maxHeight, maxPawns);
+        if(layout.size > Integer.MAX_VALUE / 4) {
+            throw new IllegalArgumentException("Tablebase too large: " + layout.size + " positions");
+        }
+        int size = (int) layout.size;
+        byte[] values = new byte[size];
+        int[] successors = new int[4 * size];
+
+        // Moves of every position: positions with an empty edge or a single player are never played
+        BandasState child = new BandasState();
+        int[] cells = new int[maxPawns];
+        for(int height=1; height<=maxHeight; height++) {
+            for(int width=1; width<=maxWidth; width++) {
+                long area = area(width, height);
+                for(int pawns=2; pawns<=Math.min(maxPawns, width * height); pawns++) {
+                    long combinations = layout.binomials[width * height][pawns];
+                    int offset = (int) layout.offsets[height][width][pawns];
+                    for(long rank=0; rank<combinations; rank++) {
+                        layout.unrank(rank, width * height, pawns, cells);
+                        for(int owners=1; owners<(1 << pawns) - 1; owners++) {
+                            long player0 = 0;
+                            long player1 = 0;
+                            for(int i=0; i<pawns; i++) {
+                                long bit = BandasState.bit(cells[i] / width, cells[i] % width);
+                                if((owners & (1 << i)) == 0) {
+                                    player0 |= bit;
+                                } else {
+                                    player1 |= bit;
+                                }
+                            }
+                            BandasState parent = BandasState.of(player0, player1, area);
+                            if(parent.trimEdges() != 0) {
+                                continue;
+                            }
+                            for(int playerId=0; playerId<2; playerId++) {
+                                int index = offset + (int) (((rank << pawns) | owners) * 2 + playerId);
+                                values[index] = DRAW;
+                                for(int direction=BandasState.UP; direction<=BandasState.LEFT; direction++) {
+                                    child.copyFrom(parent);
+                                    successors[4 * index + direction] = play(layout, child, playerId, direction);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        // Wins in p plies have a move to a loss in p - 1, losses in p plies only have moves
+        // to wins in at most p - 1 and one in p - 1, so outcomes are found by increasing length
+        long[] outcomes = new long[3];
+        for(int plies=1; ; plies++) {
+            int solved = 0;
+            for(int index=0; index<size; index++) {
+                if(values[index] != DRAW) {
+                    continue;
+                }
+                boolean win = false;
+                boolean loss = true;
+                int longest = 0;
+                for(int direction=0; direction<4; direction++) {
+                    int successor = successors[4 * index + direction];
+                    int value = successor >= 0 ? values[successor] & 0xFF : 0;
+                    if(successor == MOVER_WINS || (isLoss(value) && plies(value) == plies - 1)) {
+                        win = true;
+                        break;
+                    }
+                    if(successor == MOVER_LOSES) {
+                        longest = Math.max(longest, 1);
+                    } else if(isWin(value) && plies(value) < plies) {
+                        longest = Math.max(longest, plies(value) + 1);
+                    } else {
+                        loss = false;
+                    }
+                }
+                if(win || (loss && longest == plies)) {
+                    if(plies > MAX_PLIES) {
+                        throw new IllegalStateException("Outcome longer than " + MAX_PLIES + " plies");
+                    }
+                    values[index] = (byte) (win ? win(plies) : loss(plies));
+                    outcomes[win ? 0 : 1]++;
+                    solved++;
+                }
+            }
+            if(solved == 0) {
+                break;
+            }
+        }
+        for(byte value : values) {
+            if(value == DRAW) {
+                outcomes[2]++;
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.wrap(new byte[] {VERSION, (byte) maxWidth, (byte) maxHeight, (byte) maxPawns});
+            ByteBuffer body = ByteBuffer.wrap(values);
+            while(header.hasRemaining() || body.hasRemaining()) {
+                channel.write(new ByteBuffer[] {header, body});
+            }
+        }
+        return outcomes;
+    }
+
+    /**
+     * Plays the move and returns the index of the position reached, or MOVER_WINS or MOVER_LOSES
+     * when the move ends the game, with the same checks in the same order as Referee.gameTurn.
+     */
+    private static int play(Layout layout, BandasState state, int playerId, int direction) {
+        state.move(playerId, direction);
+        if(state.countPawns(0) == 0) {
+            return playerId == 1 ? MOVER_WINS : MOVER_LOSES;
+        }
+        if(state.countPawns(1) == 0) {
+            return playerId == 0 ? MOVER_WINS : MOVER_LOSES;
+        }
+        state.trimEdges();
+        long index = layout.indexOf(state, 1 - playerId);
+        if(index < 0) {
+            // Moves never grow the live area or add pawns, so this would be a bug in the layout
+            throw new IllegalStateException("Successor missing from the table:\n" + state.packed());
+        }
+        return (int) index;
+    }
+
+    private static long area(int width, int height) {
+        long line = (1L << width) - 1;
+        long area = 0;
+        for(int y=0; y<height; y++) {
+            area |= line << (y * BandasState.WIDTH);
+        }
+        return area;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Position indexing: for each live area size and pawn count, one block of positions ordered
+     * by the rank of the set of occupied cells in the combinatorial number system, the owners
+     * of the pawns, one bit per pawn, and the player to move.
+     */
+    private static final class Layout {
+        final int maxWidth;
+        final int maxHeight;
+        final int maxPawns;
+        final long[][] binomials;
+        final long[][][] offsets;
+        final long size;
+
+        Layout(int maxWidth, int maxHeight, int maxPawns) {
+            this.maxWidth = maxWidth;
+            this.maxHeight = maxHeight;
+            this.maxPawns = maxPawns;
+            int cells = maxWidth * maxHeight;
+            binomials = new long[cells + 1][maxPawns + 2];
+            for(int n=0; n<=cells; n++) {
+                binomials[n][0] = 1;
+                for(int k=1; k<=Math.min(n, maxPawns + 1); k++) {
+                    binomials[n][k] = binomials[n - 1][k - 1] + binomials[n - 1][k];
+                }
+            }
+            offsets = new long[maxHeight + 1][maxWidth + 1][maxPawns + 1];
+            long offset = 0;
+            for(int height=1; height<=maxHeight; height++) {
+                for(int width=1; width<=maxWidth; width++) {
+                    for(int pawns=2; pawns<=Math.min(maxPawns, width * height); pawns++) {
+                        offsets[height][width][pawns] = offset;
+                        offset += binomials[width * height][pawns] << (pawns + 1);
+                    }
+                }
+            }
+            size = offset;
+        }
+
+        /**
+         * Index of the position, -1 if it is not in the table.
+         */
+        long indexOf(BandasState state, int playerId) {
+            int width = state.getRight() - state.getLeft() + 1;
+            int height = state.getBottom() - state.getTop() + 1;
+            int pawns = state.countPawns(0) + state.countPawns(1);
+            if(width < 1 || width > maxWidth || height < 1 || height > maxHeight
+                    || pawns > maxPawns || state.countPawns(0) == 0 || state.countPawns(1) == 0) {
+                return -1;
+            }
+            long rank = 0;
+            int owners = 0;
+            int pawn = 0;
+            for(int y=0; y<height; y++) {
+                for(int x=0; x<width; x++) {
+                    int cell = state.getCell(state.getTop() + y, state.getLeft() + x);
+                    if(cell >= 0) {
+                        pawn++;
+                        rank += binomials[y * width + x][pawn];
+                        owners |= cell << (pawn - 1);
+                    }
+                }
+            }
+            return offsets[height][width][pawns] + ((rank << pawns) | owners) * 2 + playerId;
+        }
+
+        /**
+         * Occupied cells of the given rank among the area's cells, in increasing order.
+         */
+        void unrank(long rank, int areaCells, int pawns, int[] cells) {
+            int cell = areaCells;
+            for(int pawn=pawns; pawn>=1; pawn--) {
+                do {
+                    cell--;
+                } while(binomials[cell][pawn] > rank);
+                cells[pawn - 1] = cell;
+                rank -= binomials[cell][pawn];
+            }
+        }
+    }
+}
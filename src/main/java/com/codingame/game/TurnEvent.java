@@ -0,0 +1,45 @@
+package com.codingame.game;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for one referee turn, lasting the whole turn, with the time spent in each phase.
+ * Only used by JfrTurnEvents, loaded when TurnProfiler is asked for JFR events.
+ */
+@Name("bandas.Turn")
+@Label("Referee Turn")
+@Category("Bandas")
+@Description("Time spent in each phase of a referee turn")
+class TurnEvent extends Event {
+    @Label("Turn")
+    int turn;
+
+    @Label("Player")
+    int player;
+
+    @Label("Send Inputs")
+    @Timespan(Timespan.NANOSECONDS)
+    long sendInputs;
+
+    @Label("Execute")
+    @Description("Wait for the agent's output")
+    @Timespan(Timespan.NANOSECONDS)
+    long execute;
+
+    @Label("Rules")
+    @Timespan(Timespan.NANOSECONDS)
+    long rules;
+
+    @Label("Trim")
+    @Timespan(Timespan.NANOSECONDS)
+    long trim;
+
+    @Label("Render")
+    @Timespan(Timespan.NANOSECONDS)
+    long render;
+}
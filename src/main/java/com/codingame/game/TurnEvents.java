@@ -0,0 +1,15 @@
+package com.codingame.game;
+
+/**
+ * Receiver of each referee turn's phase times besides TurnProfiler's own report. Kept free of
+ * JFR types, so that the referee loads and runs on runtimes without JFR: JfrTurnEvents,
+ * the only implementation, is looked up by name when JFR events are asked for.
+ */
+interface TurnEvents {
+    void startTurn();
+
+    /**
+     * Phase times in nanoseconds, indexed by TurnProfiler.SEND_INPUTS to RENDER.
+     */
+    void endTurn(int turn, int playerId, long[] phases);
+}
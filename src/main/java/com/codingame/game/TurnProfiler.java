@@ -0,0 +1,159 @@
+package com.codingame.game;
+
+import java.util.Locale;
+
+/**
+ * Time spent in each phase of the referee turns, and response time histograms of each agent,
+ * to tell referee overhead apart from slow bots. A turn costs a handful of System.nanoTime calls:
+ * each call to phase charges the time since the previous one to the given phase.
+ */
+public class TurnProfiler {
+    public static final int SEND_INPUTS = 0;
+    public static final int EXECUTE = 1;
+    public static final int RULES = 2;
+    public static final int TRIM = 3;
+    public static final int RENDER = 4;
+    private static final String[] PHASES = {"sendInputs", "execute", "rules", "trim", "render"};
+
+    private final long timeLimitNanos;
+    // JFR events, null unless asked for
+    private final TurnEvents events;
+    private final long[] totals = new long[PHASES.length];
+    private final long[] maxima = new long[PHASES.length];
+    private final long[] current = new long[PHASES.length];
+    private final LatencyHistogram[] latencies = {new LatencyHistogram(), new LatencyHistogram()};
+    private final int[] overLimit = new int[2];
+    private int turns;
+    private int turn;
+    private int playerId;
+    private long mark;
+
+    /**
+     * The time limit is the agents' turn time, for the latency report.
+     * JFR events are only emitted when asked, the runtime may not have JFR.
+     */
+    public TurnProfiler(long timeLimitMillis, boolean jfr) {
+        this.timeLimitNanos = timeLimitMillis * 1_000_000L;
+        events = jfr ? loadJfrEvents() : null;
+    }
+
+    /**
+     * By name, so that no JFR class is loaded or even verified unless asked for.
+     */
+    private static TurnEvents loadJfrEvents() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (TurnEvents) Class.forName("com.codingame.game.JfrTurnEvents").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new IllegalArgumentException("JFR events need a Java runtime with JFR", e);
+        }
+    }
+
+    public void startTurn(int turn, int playerId) {
+        this.turn = turn;
+        this.playerId = playerId;
+        for(int i=0; i<current.length; i++) {
+            current[i] = 0;
+        }
+        if(events != null) {
+            events.startTurn();
+        }
+        mark = System.nanoTime();
+    }
+
+    public void phase(int phase) {
+        long now = System.nanoTime();
+        current[phase] += now - mark;
+        mark = now;
+    }
+
+    public void endTurn() {
+        turns++;
+        for(int i=0; i<current.length; i++) {
+            totals[i] += current[i];
+            maxima[i] = Math.max(maxima[i], current[i]);
+        }
+        latencies[playerId].record(current[EXECUTE]);
+        if(current[EXECUTE] > timeLimitNanos) {
+            overLimit[playerId]++;
+        }
+        if(events != null) {
+            events.endTurn(turn, playerId, current);
+        }
+    }
+
+    /**
+     * Phase totals and maxima, then each agent's response time percentiles against the time limit.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"turns\":").append(turns).append(",\"phases\":{");
+        for(int i=0; i<PHASES.length; i++) {
+            json.append(i == 0 ? "" : ",")
+                    .append(String.format(Locale.ROOT, "\"%s\":{\"totalMs\":%.3f,\"meanUs\":%.1f,\"maxUs\":%.1f}",
+                            PHASES[i], totals[i] / 1e6, turns == 0 ? 0 : totals[i] / 1e3 / turns, maxima[i] / 1e3));
+        }
+        json.append("},\"agents\":[");
+        for(int player=0; player<latencies.length; player++) {
+            LatencyHistogram latency = latencies[player];
+            json.append(player == 0 ? "" : ",")
+                    .append(String.format(Locale.ROOT,
+                            "{\"player\":%d,\"turns\":%d,\"p50Ms\":%.3f,\"p99Ms\":%.3f,\"maxMs\":%.3f,\"limitMs\":%d,\"overLimit\":%d}",
+                            player, latency.count, latency.percentile(0.5) / 1e6, latency.percentile(0.99) / 1e6,
+                            latency.max / 1e6, timeLimitNanos / 1_000_000, overLimit[player]));
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * Log-linear histogram of durations in nanoseconds: 8 buckets per power of two,
+     * so percentiles are within 12.5%, and the exact maximum.
+     */
+    static final class LatencyHistogram {
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private final int[] buckets = new int[(64 - SUB_BUCKET_BITS) * SUB_BUCKETS];
+        private int count;
+        private long max;
+
+        void record(long nanos) {
+            buckets[bucket(nanos)]++;
+            count++;
+            max = Math.max(max, nanos);
+        }
+
+        /**
+         * Upper bound of the bucket holding the given fraction of the samples, capped by the maximum.
+         */
+        long percentile(double fraction) {
+            long rank = (long) Math.ceil(fraction * count);
+            long seen = 0;
+            for(int i=0; i<buckets.length; i++) {
+                seen += buckets[i];
+                if(seen >= rank && seen > 0) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        static int bucket(long nanos) {
+            if(nanos < SUB_BUCKETS) {
+                return (int) Math.max(nanos, 0);
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        static long upperBound(int bucket) {
+            if(bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            long subBucket = bucket % SUB_BUCKETS;
+            return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+import com.codingame.game.BandasBatch;
+import com.codingame.game.BandasBoard;
+import com.codingame.game.BandasState;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays random games with the original referee's rules, LegacyRules, and with the rules engines
+ * side by side, comparing every cell and pawn count after each move and each edge trimming.
+ * BandasBatch, which plays the move, the end of game checks and the trimming as a single step,
+ * is compared after each whole turn, along with the result it gives when the game ends.
+ * A game ending early is also stepped by the batch until the turn limit, and must not change.
+ * Stops on the first difference and prints the seed, the moves leading to it and the boards.
+ * The moves of a game only depend on its seed, so a difference can be replayed on its own.
+ */
+public class DifferentialCheck {
+    private static final String[] DIRECTIONS = {"UP", "RIGHT", "DOWN", "LEFT"};
+
+    public static void main(String[] args) throws InterruptedException {
+        if(args.length < 1) {
+            System.err.println("Usage: DifferentialCheck <games> [first seed] [threads]");
+            System.exit(1);
+        }
+        long games = Long.parseLong(args[0]);
+        long firstSeed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        AtomicLong nextGame = new AtomicLong();
+        AtomicBoolean diverged = new AtomicBoolean();
+        long start = System.nanoTime();
+        List<Thread> workers = new ArrayList<>();
+        for(int i=0; i<threads; i++) {
+            Thread worker = new Thread(() -> {
+                long game;
+                while(!diverged.get() && (game = nextGame.getAndIncrement()) < games) {
+                    String divergence = check(firstSeed + game);
+                    if(divergence == null) {
+                        continue;
+                    }
+                    if(diverged.compareAndSet(false, true)) {
+                        System.out.println(divergence);
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        for(Thread worker : workers) {
+            worker.join();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long checked = Math.min(nextGame.get(), games);
+        System.out.println(String.format("%d games checked in %.1fs (%.0f games/s), %s",
+                checked, seconds, checked / seconds, diverged.get() ? "diverged" : "no difference"));
+        System.exit(diverged.get() ? 2 : 0);
+    }
+
+    /**
+     * Plays the game of this seed, null if the engines never differ.
+     */
+    static String check(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        LegacyRules legacy = new LegacyRules(seed);
+        BandasState state = BandasState.fromSeed(seed);
+        BandasBoard board = BandasBoard.fromSeed(BandasState.WIDTH, BandasState.HEIGHT, seed);
+        BandasBatch batch = new BandasBatch(1);
+        batch.reset(new long[] {seed});
+        byte[] directions = new byte[1];
+        // Position of the single game of the batch
+        BandasState batchState = new BandasState();
+        StringBuilder history = new StringBuilder();
+        String difference = compare(legacy, state, board, load(batch, batchState));
+        if(difference != null) {
+            return report(seed, history, "starting position", difference, legacy, state, board, batchState);
+        }
+
+        for(int turn=0; turn<BandasState.MAX_TURNS; turn++) {
+            int playerId = turn % 2;
+            int direction = random.nextInt(4);
+            history.append(history.length() == 0 ? "" : " ").append(DIRECTIONS[direction]);
+            legacy.move(playerId, direction);
+            state.move(playerId, direction);
+            board.move(playerId, direction);
+            directions[0] = (byte) direction;
+            batch.step(directions);
+            difference = compare(legacy, state, board, null);
+            if(difference != null) {
+                return report(seed, history, "move of turn " + turn, difference, legacy, state, board, null);
+            }
+            // Same checks in the same order as Referee.gameTurn
+            if(legacy.countPawns(0) == 0 || legacy.countPawns(1) == 0) {
+                // Games over are not trimmed by the batch
+                int winner = legacy.countPawns(0) == 0 ? 1 : 0;
+                difference = compare(legacy, state, board, load(batch, batchState));
+                if(difference == null) {
+                    difference = compareResult(batch, winner);
+                }
+                if(difference != null) {
+                    return report(seed, history, "last move, turn " + turn, difference, legacy, state, board, batchState);
+                }
+                for(int later=turn+1; later<BandasState.MAX_TURNS; later++) {
+                    directions[0] = (byte) random.nextInt(4);
+                    batch.step(directions);
+                }
+                difference = compare(legacy, state, board, load(batch, batchState));
+                if(difference == null) {
+                    difference = compareResult(batch, winner);
+                }
+                return difference == null ? null
+                        : report(seed, history, "turns after the end, turn " + turn, difference, legacy, state, board, batchState);
+            }
+            legacy.trimEdges();
+            state.trimEdges();
+            board.trimEdges();
+            difference = compare(legacy, state, board, load(batch, batchState));
+            if(difference == null && turn == BandasState.MAX_TURNS - 1) {
+                int diff = legacy.countPawns(0) - legacy.countPawns(1);
+                difference = compareResult(batch, diff > 0 ? 0 : diff < 0 ? 1 : BandasBatch.TIE);
+            } else if(difference == null) {
+                difference = compareResult(batch, BandasBatch.RUNNING);
+            }
+            if(difference != null) {
+                return report(seed, history, "edge trimming of turn " + turn, difference, legacy, state, board, batchState);
+            }
+        }
+        return null;
+    }
+
+    private static BandasState load(BandasBatch batch, BandasState state) {
+        state.set(batch.getPawns(0, 0), batch.getPawns(0, 1), batch.getAlive(0));
+        return state;
+    }
+
+    private static String compareResult(BandasBatch batch, int expected) {
+        if(batch.getResult(0) != expected) {
+            return "result: expected " + expected + ", BandasBatch " + batch.getResult(0);
+        }
+        int running = expected == BandasBatch.RUNNING ? 1 : 0;
+        return batch.getRunning() == running ? null : "running games: expected " + running + ", BandasBatch " + batch.getRunning();
+    }
+
+    /**
+     * Compares the engines with the legacy rules, the batch too unless null.
+     */
+    private static String compare(LegacyRules legacy, BandasState state, BandasBoard board, BandasState batch) {
+        for(int playerId=0; playerId<2; playerId++) {
+            int expected = legacy.countPawns(playerId);
+            if(state.countPawns(playerId) != expected || board.countPawns(playerId) != expected
+                    || (batch != null && batch.countPawns(playerId) != expected)) {
+                return "pawns of player " + playerId + ": legacy " + expected + ", BandasState "
+                        + state.countPawns(playerId) + ", BandasBoard " + board.countPawns(playerId)
+                        + (batch != null ? ", BandasBatch " + batch.countPawns(playerId) : "");
+            }
+        }
+        for(int y=0; y<BandasState.HEIGHT; y++) {
+            String expected = legacy.line(y);
+            if(!state.line(y).equals(expected) || !board.line(y).equals(expected)
+                    || (batch != null && !batch.line(y).equals(expected))) {
+                return "line " + y;
+            }
+        }
+        return null;
+    }
+
+    private static String report(long seed, StringBuilder history, String step, String difference,
+                                 LegacyRules legacy, BandasState state, BandasBoard board, BandasState batch) {
+        StringBuilder report = new StringBuilder();
+        report.append("Seed ").append(seed).append(": ").append(difference).append(" differ after the ")
+                .append(step).append('\n')
+                .append("Moves: ").append(history).append('\n')
+                .append(String.format("%-18s%-18s%-18s%s%n", "legacy", "BandasState", "BandasBoard",
+                        batch != null ? "BandasBatch" : ""));
+        for(int y=0; y<BandasState.HEIGHT; y++) {
+            report.append(String.format("%-18s%-18s%-18s%s%n", legacy.line(y), state.line(y), board.line(y),
+                    batch != null ? batch.line(y) : ""));
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,31 @@
+import com.codingame.gameengine.runner.MultiplayerGameRunner;
+import com.codingame.gameengine.runner.dto.GameResult;
+
+/**
+ * Plays a single game with rendering and prints the size of each serialized viewer frame,
+ * to keep an eye on replay sizes.
+ */
+public class FrameStats {
+    public static void main(String[] args) throws Exception {
+        // Usage: FrameStats [seed] [agent 0 class] [agent 1 class]
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 0;
+        Class<?> agent0 = args.length > 1 ? Class.forName(args[1]) : Agent1.class;
+        Class<?> agent1 = args.length > 2 ? Class.forName(args[2]) : Agent2.class;
+
+        MultiplayerGameRunner gameRunner = new MultiplayerGameRunner();
+        gameRunner.setSeed(seed);
+        gameRunner.addAgent(agent0);
+        gameRunner.addAgent(agent1);
+        GameResult result = gameRunner.simulate();
+
+        long total = 0;
+        for(int frame=0; frame<result.views.size(); frame++) {
+            int size = result.views.get(frame).length();
+            total += size;
+            System.out.println("frame " + frame + ": " + size + " chars");
+        }
+        System.out.println(result.views.size() + " frames, " + total + " chars");
+        // Agents threads never end on their own
+        System.exit(0);
+    }
+}
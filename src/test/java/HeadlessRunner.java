@@ -0,0 +1,80 @@
+import com.codingame.gameengine.runner.dto.GameResult;
+import com.google.gson.JsonParser;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Runs a range of seeds between two agents without the viewer server nor any rendering,
+ * and writes one line per game to the results file: seed, score of each player and turn count.
+ * Binary replays of the games are appended to the replay file when one is given.
+ */
+public class HeadlessRunner {
+    // Seeds are submitted by batches so that results can be written as they come
+    private static final int BATCH_SIZE = 1000;
+
+    public static void main(String[] args) throws Exception {
+        if(args.length < 5) {
+            System.err.println("Usage: HeadlessRunner <first seed> <last seed> <agent 0 class> <agent 1 class> <results file> [threads] [replay file]");
+            System.exit(1);
+        }
+        long firstSeed = Long.parseLong(args[0]);
+        long lastSeed = Long.parseLong(args[1]);
+        Class<?> agent0 = Class.forName(args[2]);
+        Class<?> agent1 = Class.forName(args[3]);
+        int threads = args.length > 5 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+
+        Properties gameParameters = new Properties();
+        gameParameters.setProperty("headless", "true");
+        if(args.length > 6) {
+            gameParameters.setProperty("replay", args[6]);
+        }
+
+        MatchExecutor matchExecutor = new MatchExecutor(threads);
+        int[] wins = new int[2];
+        int ties = 0;
+        long games = 0;
+        long start = System.nanoTime();
+        try (PrintWriter results = new PrintWriter(args[4])) {
+            for(long batchStart=firstSeed; batchStart<=lastSeed; batchStart+=BATCH_SIZE) {
+                List<Long> seeds = new ArrayList<>();
+                for(long seed=batchStart; seed<=lastSeed && seed<batchStart+BATCH_SIZE; seed++) {
+                    seeds.add(seed);
+                }
+
+                List<GameResult> batch = matchExecutor.run(seeds, agent0, agent1, gameParameters);
+                for(int i=0; i<seeds.size(); i++) {
+                    GameResult result = batch.get(i);
+                    int score0 = result.scores.get(0);
+                    int score1 = result.scores.get(1);
+                    results.println(seeds.get(i) + " " + score0 + " " + score1 + " " + turns(result));
+                    if(score0 > score1) {
+                        wins[0]++;
+                    } else if(score1 > score0) {
+                        wins[1]++;
+                    } else {
+                        ties++;
+                    }
+                }
+                games += seeds.size();
+            }
+        } finally {
+            matchExecutor.shutdown();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("%d games in %.1fs (%.1f games/s): %d - %d, %d ties",
+                games, seconds, games / seconds, wins[0], wins[1], ties));
+        // Agents threads never end on their own
+        System.exit(0);
+    }
+
+    static int turns(GameResult result) {
+        if(result.metadata == null) {
+            return -1;
+        }
+        return new JsonParser().parse(result.metadata).getAsJsonObject().get("turns").getAsInt();
+    }
+}
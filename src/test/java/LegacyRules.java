@@ -0,0 +1,324 @@
+import java.util.Random;
+
+/**
+ * The rules as the original referee applied them, on its grid of strings, with the rendering
+ * taken out: pawns are moved one by one, recursively pushing the pawns in front of them,
+ * and empty lines and columns are removed from the edges inwards.
+ * Kept as the reference the rules engines are checked against.
+ */
+public class LegacyRules {
+    private static final int WIDTH = 8;
+    private static final int HEIGHT = 8;
+    private static final String DEAD_TILE_CHAR = "x";
+    private static final String EMPTY_TILE_CHAR = "-";
+    private static final String[] DIRECTIONS = {"UP", "RIGHT", "DOWN", "LEFT"};
+
+    private final String[][] GRID = new String[HEIGHT][WIDTH];
+
+    public LegacyRules(long seed) {
+        addPawns(seed);
+    }
+
+    public LegacyRules(LegacyRules other) {
+        for(int i=0; i<HEIGHT; i++) {
+            System.arraycopy(other.GRID[i], 0, GRID[i], 0, WIDTH);
+        }
+    }
+
+    private void addPawns(long seed) {
+        Random rng = new Random(seed);
+        int pawnsPerPlayer = WIDTH * HEIGHT / 2;
+        int pawnsInCenterSquarePerPlayer = 8;
+        // Balance center 4*4 square
+        for(int pawn=0; pawn<pawnsInCenterSquarePerPlayer; pawn++){
+            int i, j;
+            do {
+                i = rng.nextInt(4) + 2;
+                j = rng.nextInt(4) + 2;
+            } while (GRID[i][j] != null);
+            GRID[i][j] = "0";
+        }
+
+        for(int i=2; i<6; i++){
+            for(int j=2; j<6; j++){
+                if(GRID[i][j] == null){
+                    GRID[i][j] = "1";
+                }
+            }
+        }
+        // Remainings tiles
+        // Place all pawns for player 0 randomly
+        for(int pawn=0; pawn<pawnsPerPlayer-pawnsInCenterSquarePerPlayer; pawn++){
+            int i, j;
+            do {
+                i = rng.nextInt(HEIGHT);
+                j = rng.nextInt(WIDTH);
+            } while (GRID[i][j] != null);
+            GRID[i][j] = "0";
+        }
+        // All empty cells are for player 1
+        for(int i=0; i<HEIGHT; i++){
+            for(int j=0; j<WIDTH; j++){
+                if(GRID[i][j] == null){
+                    GRID[i][j] = "1";
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the player's pawns in the direction, BandasState.UP to LEFT.
+     */
+    public void move(int playerId, int direction) {
+        handlePlayerOutput(DIRECTIONS[direction], Integer.toString(playerId));
+    }
+
+    /**
+     * Removes the empty lines and columns on the edges, as done after every move.
+     */
+    public void trimEdges() {
+        findEmptyLines();
+        findEmptyColumns();
+    }
+
+    public String line(int y) {
+        return String.join(" ", GRID[y]);
+    }
+
+    public int countPawns(int playerId) {
+        return countPlayersPawn(false)[playerId];
+    }
+
+    private void handlePlayerOutput(String output, String playerId) {
+        switch(output) {
+            case "UP" :
+                moveUp(playerId);
+                break;
+            case "DOWN":
+                moveDown(playerId);
+                break;
+            case "RIGHT":
+                moveRight(playerId);
+                break;
+            case "LEFT":
+                moveLeft(playerId);
+                break;
+        }
+    }
+
+    private void moveUp(String playerId) {
+        for(int col=0; col<WIDTH; col++) {
+            for(int y=0; y<HEIGHT; y++) {
+                if (GRID[y][col].equals(playerId)) {
+                    singleMoveUp(playerId, y, col);
+                }
+            }
+        }
+    }
+
+    private void singleMoveUp(String playerId, int y, int x) {
+        int nextY = y - 1;
+        if(nextY < 0) { // player moves out of the map
+            movePlayer(playerId, y, x, -1, 0, true);
+            return;
+        }
+
+        String aboveCellState = GRID[nextY][x];
+        if(cellHasPlayer(aboveCellState)){
+            singleMoveUp(aboveCellState, y - 1, x);
+            singleMoveUp(playerId, y, x);
+        } else {
+            movePlayer(playerId, y, x, -1, 0, aboveCellState.equals("x"));
+        }
+    }
+
+    private void moveDown(String playerId) {
+        for(int col=0; col<WIDTH; col++) {
+            for(int y=HEIGHT-1; y>=0; y--) {
+                if (GRID[y][col].equals(playerId)) {
+                    singleMoveDown(playerId, y, col);
+                }
+            }
+        }
+    }
+
+    private void singleMoveDown(String playerId, int y, int x) {
+        int nextY = y + 1;
+        if(nextY > HEIGHT - 1) { // player moves out of the map
+            movePlayer(playerId, y, x, 1, 0, true);
+            return;
+        }
+
+        String belowCellState = GRID[nextY][x];
+        if(cellHasPlayer(belowCellState)){
+            singleMoveDown(belowCellState, y + 1, x);
+            singleMoveDown(playerId, y, x);
+        } else {
+            movePlayer(playerId, y, x, 1, 0, belowCellState.equals("x"));
+        }
+    }
+
+    private void moveRight(String playerId) {
+        for(int y=0; y<HEIGHT; y++) {
+            for(int col=WIDTH-1; col>=0; col--) {
+                if(GRID[y][col].equals(playerId)){
+                    singleMoveRight(playerId, y, col);
+                }
+            }
+        }
+    }
+
+    private void singleMoveRight(String playerId, int y, int x) {
+        int nextX = x + 1;
+        if(nextX > WIDTH - 1) { // player moves out of the map
+            movePlayer(playerId, y, x, 0, 1, true);
+            return;
+        }
+
+        String rightCellState = GRID[y][nextX];
+        if(cellHasPlayer(rightCellState)) {
+            singleMoveRight(rightCellState, y, x + 1);
+            singleMoveRight(playerId, y, x);
+        } else {
+            movePlayer(playerId, y, x, 0, 1, rightCellState.equals("x"));
+        }
+    }
+
+    private void moveLeft(String playerId) {
+        for(int y=0; y<HEIGHT; y++) {
+            for(int col=0; col<WIDTH; col++) {
+                if(GRID[y][col].equals(playerId)){
+                    singleMoveLeft(playerId, y, col);
+                }
+            }
+        }
+    }
+
+    private void singleMoveLeft(String playerId, int y, int x) {
+        int nextX = x - 1;
+        if(nextX < 0) { // player moves out of the map
+            movePlayer(playerId, y, x, 0, -1, true);
+            return;
+        }
+
+        String leftCellState = GRID[y][nextX];
+        if(cellHasPlayer(leftCellState)) {
+            singleMoveLeft(leftCellState, y, x - 1);
+            singleMoveLeft(playerId, y, x);
+        } else {
+            movePlayer(playerId, y, x, 0, -1, leftCellState.equals("x"));
+        }
+    }
+
+    private void findEmptyColumns() {
+        // columns from the left
+        for(int i=0; i<WIDTH; i++) {
+            if(!checkColumn(i)) {
+                break;
+            }
+        }
+        // columns from the right
+        for(int i=WIDTH-1; i>=0; i--) {
+            if(!checkColumn(i)) {
+                break;
+            }
+        }
+    }
+
+    private boolean checkColumn(int columnIndex) {
+        boolean columnToRemove = true;
+        boolean deadColumn = true;
+        for(int j=0; j<HEIGHT; j++) {
+            String cellValue = GRID[j][columnIndex];
+            if(!cellValue.equals("x")) {
+                deadColumn = false;
+            }
+            if(cellHasPlayer(cellValue)) {
+                columnToRemove = false;
+                break;
+            }
+        }
+        if(columnToRemove) {
+            for(int i=0; i<HEIGHT; i++) {
+                GRID[i][columnIndex] = DEAD_TILE_CHAR;
+            }
+        } else if(!deadColumn) { // Player(s) found on the line / col
+            return false;
+        }
+
+        return true;
+    }
+
+    private void findEmptyLines() {
+        // lines from the top
+        for(int i=0; i<HEIGHT; i++) {
+            if(!checkline(i)) {
+                break;
+            }
+        }
+        // lines from the bottom
+        for(int i=HEIGHT-1; i>=0; i--) {
+            if(!checkline(i)) {
+                break;
+            }
+        }
+    }
+
+    private boolean checkline(int lineIndex) {
+        boolean lineToRemove = true;
+        boolean deadLine = true;
+        for(int j=0; j<WIDTH; j++) {
+            String cellValue = GRID[lineIndex][j];
+            if(!cellValue.equals("x")) {
+                deadLine = false;
+            }
+            if(cellHasPlayer(cellValue)) {
+                lineToRemove = false;
+                break;
+            }
+        }
+        if(lineToRemove) {
+            for(int i=0; i<WIDTH; i++) {
+                GRID[lineIndex][i] = DEAD_TILE_CHAR;
+            }
+        } else if(!deadLine) { // Player(s) found on the line / col
+            return false;
+        }
+
+        return true;
+    }
+
+    private int[] countPlayersPawn(boolean breakIfInProgress) {
+        int playerA = 0;
+        int playerB = 0;
+
+        for(int y=0; y<HEIGHT; y++) {
+            for(int col=0; col<WIDTH; col++) {
+                String cellState = GRID[y][col];
+                if(cellState.equals("0")){
+                    playerA++;
+                } else if(cellState.equals("1")){
+                    playerB++;
+                }
+
+                if(breakIfInProgress && playerA > 0 && playerB > 0) { // Game still in progress
+                    break;
+                }
+            }
+        }
+
+        return new int[] {playerA, playerB};
+    }
+
+    private boolean cellHasPlayer(String cellValue) {
+        // Check if a grid cell has a player on it
+        return cellValue.equals("0") || cellValue.equals("1");
+    }
+
+    private void movePlayer(String playerId, int y, int x, int dy, int dx, boolean removeAfter) {
+        if(!removeAfter) {
+            GRID[y + dy][x + dx] = playerId;
+        }
+        GRID[y][x] = EMPTY_TILE_CHAR;
+    }
+}
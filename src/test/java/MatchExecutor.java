@@ -0,0 +1,97 @@
+import com.codingame.gameengine.runner.InProcessAgent;
+import com.codingame.gameengine.runner.MultiplayerGameRunner;
+import com.codingame.gameengine.runner.dto.GameResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs many games concurrently in the same JVM on a bounded thread pool.
+ * Each game gets its own runner and referee, and results are returned in
+ * seed order whatever the order games complete in, so a run only depends
+ * on its seeds and on the agents being deterministic.
+ * Agent classes implementing InProcessAgent.Bot or StreamBot get a new instance per game,
+ * run in-process; other classes are added to the runner as they are.
+ */
+public class MatchExecutor {
+    private final ExecutorService executor;
+
+    public MatchExecutor(int threads) {
+        executor = Executors.newFixedThreadPool(threads);
+    }
+
+    public List<GameResult> run(List<Long> seeds, Class<?> agent0, Class<?> agent1)
+            throws InterruptedException, ExecutionException {
+        return run(seeds, agent0, agent1, new Properties());
+    }
+
+    public List<GameResult> run(List<Long> seeds, Class<?> agent0, Class<?> agent1, Properties gameParameters)
+            throws InterruptedException, ExecutionException {
+        List<Future<GameResult>> futures = new ArrayList<>();
+        for(Long seed : seeds) {
+            futures.add(executor.submit(() -> simulate(seed, agent0, agent1, gameParameters)));
+        }
+
+        List<GameResult> results = new ArrayList<>();
+        for(Future<GameResult> future : futures) {
+            results.add(future.get());
+        }
+        return results;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static GameResult simulate(long seed, Class<?> agent0, Class<?> agent1, Properties gameParameters) {
+        MultiplayerGameRunner gameRunner = new MultiplayerGameRunner();
+        gameRunner.setSeed(seed);
+        gameRunner.setGameParameters(gameParameters);
+        addAgent(gameRunner, agent0);
+        addAgent(gameRunner, agent1);
+        return gameRunner.simulate();
+    }
+
+    private static void addAgent(MultiplayerGameRunner gameRunner, Class<?> agent) {
+        try {
+            if(InProcessAgent.Bot.class.isAssignableFrom(agent)) {
+                InProcessAgent.addTo(gameRunner, new InProcessAgent((InProcessAgent.Bot) agent.getDeclaredConstructor().newInstance()), agent.getSimpleName());
+            } else if(InProcessAgent.StreamBot.class.isAssignableFrom(agent)) {
+                InProcessAgent.addTo(gameRunner, new InProcessAgent((InProcessAgent.StreamBot) agent.getDeclaredConstructor().newInstance()), agent.getSimpleName());
+            } else {
+                gameRunner.addAgent(agent);
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot create agent " + agent.getName(), e);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Usage: MatchExecutor [threads] [first seed] [games]
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        long firstSeed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        int games = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+        List<Long> seeds = new ArrayList<>();
+        for(int i=0; i<games; i++) {
+            seeds.add(firstSeed + i);
+        }
+
+        MatchExecutor matchExecutor = new MatchExecutor(threads);
+        try {
+            List<GameResult> results = matchExecutor.run(seeds, Agent1.class, Agent2.class);
+            for(int i=0; i<games; i++) {
+                System.out.println(seeds.get(i) + " " + results.get(i).scores);
+            }
+        } finally {
+            matchExecutor.shutdown();
+        }
+        // Agents threads never end on their own
+        System.exit(0);
+    }
+}
@@ -0,0 +1,246 @@
+import com.codingame.game.BandasState;
+import com.codingame.game.BotProtocol;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Root-parallel Monte Carlo Tree Search: every worker of a fork/join pool grows its own
+ * tree from the current position for the turn budget, and the root visit counts are
+ * summed to pick the move. Playouts use BandasState, so they follow the referee rules.
+ * Started with the stats argument, reports playouts per second per thread on stderr.
+ */
+public class MctsAgent {
+    // The referee allows 100ms per turn
+    private static final long TIME_BUDGET_NANOS = 80_000_000L;
+    private static final int MAX_NODES = 1 << 18;
+    private static final double EXPLORATION = 1.4;
+    // Iterations between two clock reads, each expanding at most one node
+    private static final int BATCH = 64;
+
+    public static void main(String[] args) throws IOException {
+        BotProtocol protocol = new BotProtocol(System.in, System.out);
+        protocol.readInit();
+        final int MY_ID = protocol.getMyId();
+        boolean stats = args.length > 0 && args[0].equals("stats");
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Tree[] trees = new Tree[threads];
+        for(int i=0; i<threads; i++) {
+            trees[i] = new Tree(i);
+        }
+
+        BandasState root = new BandasState();
+        while(protocol.readTurn()) {
+            long start = System.nanoTime();
+            int turn = protocol.getTurn();
+            protocol.load(root);
+
+            long deadline = start + TIME_BUDGET_NANOS;
+            Search[] searches = new Search[threads];
+            for(int i=0; i<threads; i++) {
+                searches[i] = new Search(trees[i], root, MY_ID, turn, deadline);
+            }
+            long[] visits = pool.invoke(new Merge(searches, 0, threads));
+
+            int best = 0;
+            for(int direction=1; direction<4; direction++) {
+                if(visits[direction] > visits[best]) {
+                    best = direction;
+                }
+            }
+            if(stats) {
+                double seconds = (System.nanoTime() - start) / 1e9;
+                long playouts = visits[0] + visits[1] + visits[2] + visits[3];
+                System.err.println(String.format("%d playouts on %d threads, %.0f playouts/s per thread",
+                        playouts, threads, playouts / seconds / threads));
+            }
+            protocol.writeMove(best);
+        }
+    }
+
+    /**
+     * Forks one search per worker and sums their root visit counts.
+     */
+    private static class Merge extends RecursiveTask<long[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final Search[] searches;
+        private final int from;
+        private final int to;
+
+        Merge(Search[] searches, int from, int to) {
+            this.searches = searches;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected long[] compute() {
+            if(to - from == 1) {
+                return searches[from].run();
+            }
+            int middle = (from + to) >>> 1;
+            Merge right = new Merge(searches, middle, to);
+            right.fork();
+            long[] visits = new Merge(searches, from, middle).compute();
+            long[] other = right.join();
+            for(int i=0; i<4; i++) {
+                visits[i] += other[i];
+            }
+            return visits;
+        }
+    }
+
+    private static class Search {
+        private final Tree tree;
+        private final BandasState root;
+        private final int player;
+        private final int turn;
+        private final long deadline;
+
+        Search(Tree tree, BandasState root, int player, int turn, long deadline) {
+            this.tree = tree;
+            this.root = root;
+            this.player = player;
+            this.turn = turn;
+            this.deadline = deadline;
+        }
+
+        long[] run() {
+            tree.reset();
+            while(System.nanoTime() < deadline && tree.size + 4 * BATCH <= MAX_NODES) {
+                for(int i=0; i<BATCH; i++) {
+                    tree.iterate(root, player, turn);
+                }
+            }
+            long[] visits = new long[4];
+            for(int direction=0; direction<4; direction++) {
+                int child = tree.firstChild[0] + direction;
+                visits[direction] = tree.firstChild[0] == 0 ? 0 : tree.visits[child];
+            }
+            return visits;
+        }
+    }
+
+    /**
+     * One worker's tree, stored in flat arrays reused from turn to turn.
+     * Children of a node are contiguous, one per direction, and a node's wins are
+     * counted for the player who made the move leading to it.
+     */
+    private static class Tree {
+        final int[] visits = new int[MAX_NODES];
+        final float[] wins = new float[MAX_NODES];
+        final int[] firstChild = new int[MAX_NODES];
+        final int[] path = new int[BandasState.MAX_TURNS + 1];
+        final BandasState state = new BandasState();
+        final SplittableRandom rng;
+        int size;
+
+        Tree(int seed) {
+            rng = new SplittableRandom(seed);
+        }
+
+        void reset() {
+            size = 1;
+            visits[0] = 0;
+            wins[0] = 0;
+            firstChild[0] = 0;
+        }
+
+        void iterate(BandasState root, int rootPlayer, int rootTurn) {
+            state.copyFrom(root);
+            int node = 0;
+            int depth = 0;
+            int player = rootPlayer;
+            int turn = rootTurn;
+            path[depth++] = node;
+
+            // Selection, then expansion of the first leaf visited twice
+            while(!isOver(turn)) {
+                if(firstChild[node] == 0) {
+                    if(visits[node] == 0 && node != 0) {
+                        break;
+                    }
+                    expand(node);
+                }
+                int parent = node;
+                node = select(parent);
+                state.move(player, node - firstChild[parent]);
+                state.trimEdges();
+                path[depth++] = node;
+                player = 1 - player;
+                turn++;
+            }
+
+            int winner = playout(player, turn);
+            for(int i=depth-1; i>=0; i--) {
+                int n = path[i];
+                visits[n]++;
+                // The player who moved into the node at depth i is the root player for odd depths
+                int mover = (i & 1) == 1 ? rootPlayer : 1 - rootPlayer;
+                if(winner == mover) {
+                    wins[n] += 1;
+                } else if(winner == -1) {
+                    wins[n] += 0.5f;
+                }
+            }
+        }
+
+        private void expand(int node) {
+            firstChild[node] = size;
+            for(int i=0; i<4; i++) {
+                visits[size + i] = 0;
+                wins[size + i] = 0;
+                firstChild[size + i] = 0;
+            }
+            size += 4;
+        }
+
+        private int select(int node) {
+            int first = firstChild[node];
+            double logParent = Math.log(visits[node] + 1);
+            int best = first;
+            double bestValue = -1;
+            for(int child=first; child<first+4; child++) {
+                if(visits[child] == 0) {
+                    return child;
+                }
+                double value = wins[child] / visits[child]
+                        + EXPLORATION * Math.sqrt(logParent / visits[child]);
+                if(value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        private boolean isOver(int turn) {
+            return state.countPawns(0) == 0 || state.countPawns(1) == 0 || turn >= BandasState.MAX_TURNS;
+        }
+
+        /**
+         * Random moves until the game ends, returning the winner or -1 for a tie.
+         */
+        private int playout(int player, int turn) {
+            while(!isOver(turn)) {
+                state.move(player, rng.nextInt(4));
+                state.trimEdges();
+                player = 1 - player;
+                turn++;
+            }
+            // Same order as the referee's winner check
+            if(state.countPawns(0) == 0) {
+                return 1;
+            } else if(state.countPawns(1) == 0) {
+                return 0;
+            }
+            int diff = state.countPawns(0) - state.countPawns(1);
+            return diff > 0 ? 0 : diff < 0 ? 1 : -1;
+        }
+    }
+}
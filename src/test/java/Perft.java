@@ -0,0 +1,185 @@
+import com.codingame.game.BandasBoard;
+import com.codingame.game.BandasState;
+
+/**
+ * Walks every sequence of moves from the starting positions of a range of seeds down to a fixed
+ * depth, both players trying the 4 directions in turn, and counts the positions reached.
+ * Games ending before the depth, when a player has no pawn left, are counted apart.
+ * Counts only depend on the rules, so every engine must give the same ones; the nodes per second
+ * give a throughput figure for the engine to compare changes against.
+ */
+public class Perft {
+    public static void main(String[] args) {
+        if(args.length < 1) {
+            System.err.println("Usage: Perft <depth> [state|undo|board|legacy] [first seed] [last seed]");
+            System.exit(1);
+        }
+        int depth = Integer.parseInt(args[0]);
+        String engineName = args.length > 1 ? args[1] : "state";
+        long firstSeed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+        long lastSeed = args.length > 3 ? Long.parseLong(args[3]) : firstSeed;
+        if(depth < 1 || depth > BandasState.MAX_TURNS) {
+            System.err.println("Depth must be between 1 and " + BandasState.MAX_TURNS);
+            System.exit(1);
+        }
+
+        long totalNodes = 0;
+        long start = System.nanoTime();
+        for(long seed=firstSeed; seed<=lastSeed; seed++) {
+            Engine engine = engine(engineName, seed, depth);
+            long[] counts = new long[3];
+            perft(engine, 0, depth, counts);
+            totalNodes += counts[2];
+            System.out.println(String.format("seed %d: %d leaves, %d ended games, %d nodes",
+                    seed, counts[0], counts[1], counts[2]));
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("%s: %d nodes in %.2fs (%.0f nodes/s)",
+                engineName, totalNodes, seconds, totalNodes / seconds));
+    }
+
+    /**
+     * Counts leaves, games ended early and nodes, moves included, below the position at this ply.
+     */
+    private static void perft(Engine engine, int ply, int depth, long[] counts) {
+        int playerId = ply % 2;
+        for(int direction=BandasState.UP; direction<=BandasState.LEFT; direction++) {
+            boolean over = engine.play(ply, playerId, direction);
+            counts[2]++;
+            if(over) {
+                counts[1]++;
+            } else if(ply + 1 == depth) {
+                counts[0]++;
+            } else {
+                perft(engine, ply + 1, depth, counts);
+            }
+            engine.undo(ply);
+        }
+    }
+
+    private static Engine engine(String name, long seed, int depth) {
+        switch(name) {
+            case "state":
+                return new StateEngine(seed, depth);
+            case "undo":
+                return new UndoEngine(seed, depth);
+            case "board":
+                return new BoardEngine(seed, depth);
+            case "legacy":
+                return new LegacyEngine(seed, depth);
+            default:
+                throw new IllegalArgumentException("Unknown engine " + name + ", expected state, undo, board or legacy");
+        }
+    }
+
+    /**
+     * Plays and undoes the moves from the position at each ply.
+     */
+    private interface Engine {
+        /**
+         * Plays the move from the position at this ply, with the same checks in the same order
+         * as the referee: end of game first, then edge trimming. Returns whether the game is over.
+         */
+        boolean play(int ply, int playerId, int direction);
+
+        void undo(int ply);
+    }
+
+    /**
+     * One position per ply, so that trying a move is a copy of the parent position.
+     */
+    private static final class StateEngine implements Engine {
+        private final BandasState[] states;
+
+        StateEngine(long seed, int depth) {
+            states = new BandasState[depth + 1];
+            for(int ply=0; ply<=depth; ply++) {
+                states[ply] = BandasState.fromSeed(seed);
+            }
+        }
+
+        public boolean play(int ply, int playerId, int direction) {
+            BandasState state = states[ply + 1];
+            state.copyFrom(states[ply]);
+            state.move(playerId, direction);
+            if(state.countPawns(0) == 0 || state.countPawns(1) == 0) {
+                return true;
+            }
+            state.trimEdges();
+            return false;
+        }
+
+        public void undo(int ply) {
+        }
+    }
+
+    /**
+     * A single position, with makeMove and unmakeMove.
+     */
+    private static final class UndoEngine implements Engine {
+        private final BandasState state;
+        private final int[] records;
+
+        UndoEngine(long seed, int depth) {
+            state = BandasState.fromSeed(seed);
+            records = new int[depth];
+        }
+
+        public boolean play(int ply, int playerId, int direction) {
+            records[ply] = state.makeMove(playerId, direction);
+            return state.countPawns(0) == 0 || state.countPawns(1) == 0;
+        }
+
+        public void undo(int ply) {
+            state.unmakeMove(records[ply]);
+        }
+    }
+
+    private static final class BoardEngine implements Engine {
+        private final BandasBoard[] boards;
+
+        BoardEngine(long seed, int depth) {
+            boards = new BandasBoard[depth + 1];
+            for(int ply=0; ply<=depth; ply++) {
+                boards[ply] = BandasBoard.fromSeed(BandasState.WIDTH, BandasState.HEIGHT, seed);
+            }
+        }
+
+        public boolean play(int ply, int playerId, int direction) {
+            BandasBoard board = boards[ply + 1];
+            board.copyFrom(boards[ply]);
+            board.move(playerId, direction);
+            if(board.countPawns(0) == 0 || board.countPawns(1) == 0) {
+                return true;
+            }
+            board.trimEdges();
+            return false;
+        }
+
+        public void undo(int ply) {
+        }
+    }
+
+    private static final class LegacyEngine implements Engine {
+        private final LegacyRules[] grids;
+
+        LegacyEngine(long seed, int depth) {
+            grids = new LegacyRules[depth + 1];
+            grids[0] = new LegacyRules(seed);
+        }
+
+        public boolean play(int ply, int playerId, int direction) {
+            LegacyRules grid = new LegacyRules(grids[ply]);
+            grids[ply + 1] = grid;
+            grid.move(playerId, direction);
+            if(grid.countPawns(0) == 0 || grid.countPawns(1) == 0) {
+                return true;
+            }
+            grid.trimEdges();
+            return false;
+        }
+
+        public void undo(int ply) {
+        }
+    }
+}
@@ -0,0 +1,17 @@
+import com.codingame.gameengine.runner.InProcessAgent;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random agent run in-process, the counterpart of Agent1 for batch runs
+ * where starting a player per game would cost more than the game itself.
+ */
+public class RandomBot implements InProcessAgent.Bot {
+    private static final String[] DIRECTIONS = {"UP", "RIGHT", "DOWN", "LEFT"};
+    private final SplittableRandom rng = new SplittableRandom();
+
+    @Override
+    public String play(InProcessAgent.State state) {
+        return DIRECTIONS[rng.nextInt(DIRECTIONS.length)];
+    }
+}
@@ -0,0 +1,67 @@
+import com.codingame.game.Replay;
+import com.codingame.game.ReplayFile;
+import com.codingame.game.StartingPositions;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Checks how ReplayFile indexes damaged files: a truncated last record is skipped, and a
+ * corrupted length prefix, such as a negative one, is an IOException rather than an endless loop.
+ */
+public class ReplayFileCheck {
+    private static final int GAMES = 3;
+
+    public static void main(String[] args) throws IOException {
+        Path file = Files.createTempFile("replays", ".bin");
+        try {
+            String failure = check(file);
+            System.out.println(failure == null ? "Damaged replay files handled" : failure);
+            System.exit(failure == null ? 0 : 2);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    static String check(Path file) throws IOException {
+        byte[] moves = {0, 1, 2, 3, 0};
+        for(int game=0; game<GAMES; game++) {
+            Replay.append(file, new Replay(game, 8, 8, StartingPositions.Layout.COMPATIBLE, moves, moves.length,
+                    Replay.END_NORMAL, 1, 0));
+        }
+        long secondRecord;
+        try (ReplayFile replays = new ReplayFile(file)) {
+            if(replays.size() != GAMES) {
+                return "Expected " + GAMES + " games, found " + replays.size();
+            }
+            secondRecord = replays.getOffset(1);
+        }
+
+        // A crash while appending leaves part of a record
+        long complete = Files.size(file);
+        Files.write(file, new byte[] {0, 0, 0, 100, 1, 2}, StandardOpenOption.APPEND);
+        try (ReplayFile replays = new ReplayFile(file)) {
+            if(replays.size() != GAMES) {
+                return "Expected " + GAMES + " games before a truncated record, found " + replays.size();
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(complete);
+            ByteBuffer prefix = ByteBuffer.allocate(4).putInt(0, -4);
+            channel.write(prefix, secondRecord);
+        }
+        try (ReplayFile replays = new ReplayFile(file)) {
+            return "A negative length prefix was accepted, " + replays.size() + " games";
+        } catch (IOException e) {
+            if(!e.getMessage().contains("offset " + secondRecord)) {
+                return "The error does not name the corrupted offset: " + e.getMessage();
+            }
+        }
+        return null;
+    }
+}
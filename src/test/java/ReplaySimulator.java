@@ -0,0 +1,73 @@
+import com.codingame.game.BandasBoard;
+import com.codingame.game.BandasState;
+import com.codingame.game.Replay;
+import com.codingame.game.ReplayFile;
+
+import java.nio.file.Paths;
+
+/**
+ * Replays every game of a replay file without the game runner, applying the moves with the
+ * referee's rules engine, and checks that each game ends where it was recorded with the same scores.
+ */
+public class ReplaySimulator {
+    public static void main(String[] args) throws Exception {
+        if(args.length < 1) {
+            System.err.println("Usage: ReplaySimulator <replay file>");
+            System.exit(1);
+        }
+        int mismatches = 0;
+        long start = System.nanoTime();
+        int games;
+        try (ReplayFile replays = new ReplayFile(Paths.get(args[0]))) {
+            games = replays.size();
+            for(int game=0; game<games; game++) {
+                Replay replay = replays.get(game);
+                int[] scores = simulate(replay);
+                if(scores == null) {
+                    mismatches++;
+                    System.out.println("Game " + game + " (seed " + replay.getSeed() + ") does not end after "
+                            + replay.getMoveCount() + " moves");
+                } else if(scores[0] != replay.getScore(0) || scores[1] != replay.getScore(1)) {
+                    mismatches++;
+                    System.out.println("Game " + game + " (seed " + replay.getSeed() + ") scores "
+                            + scores[0] + " " + scores[1] + ", recorded " + replay.getScore(0) + " " + replay.getScore(1));
+                }
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("%d games, %d mismatches, %.0f games/s", games, mismatches, games / seconds));
+        System.exit(mismatches == 0 ? 0 : 2);
+    }
+
+    /**
+     * Scores as the referee sets them, or null if the game does not end on the last recorded move.
+     */
+    static int[] simulate(Replay replay) {
+        BandasBoard board = BandasBoard.fromSeed(replay.getWidth(), replay.getHeight(), replay.getSeed(),
+                replay.getLayout());
+        int[] scores = new int[2];
+        int moveCount = replay.getMoveCount();
+        for(int turn=0; turn<moveCount; turn++) {
+            board.move(turn % 2, replay.getMove(turn));
+            boolean last = turn == moveCount - 1;
+            // Same checks in the same order as Referee.gameTurn
+            if(board.countPawns(0) == 0 || board.countPawns(1) == 0) {
+                scores[board.countPawns(0) == 0 ? 1 : 0] = 1;
+                return last && replay.getEnd() == Replay.END_NORMAL ? scores : null;
+            }
+            board.trimEdges();
+            if(turn == BandasState.MAX_TURNS - 1) {
+                int diff = board.countPawns(0) - board.countPawns(1);
+                if(diff != 0) {
+                    scores[diff > 0 ? 0 : 1] = 1;
+                }
+                return last && replay.getEnd() == Replay.END_NORMAL ? scores : null;
+            }
+        }
+        if(replay.getEnd() != Replay.END_DEACTIVATED) {
+            return null;
+        }
+        scores[moveCount % 2] = -1;
+        return scores;
+    }
+}
@@ -0,0 +1,51 @@
+import com.codingame.game.BandasState;
+import com.codingame.game.Symmetry;
+
+import java.util.SplittableRandom;
+
+/**
+ * Checks the canonical keys of Symmetry on random positions: the 8 transforms of a position share
+ * its key, while the same position with the other player to move, the only difference on which
+ * a game ending with no pawn left turns, gets another key and another hash.
+ */
+public class SymmetryCheck {
+    public static void main(String[] args) {
+        long positions = args.length > 0 ? Long.parseLong(args[0]) : 100000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+
+        // One pawn each, the smallest position
+        String failure = check(BandasState.bit(0, 0), BandasState.bit(0, 1), BandasState.bit(0, 0) | BandasState.bit(0, 1));
+        SplittableRandom random = new SplittableRandom(seed);
+        for(long i=0; i<positions && failure == null; i++) {
+            long alive = random.nextLong() | random.nextLong();
+            long own = alive & random.nextLong() & random.nextLong();
+            long opponent = alive & ~own & random.nextLong();
+            failure = check(own, opponent, alive);
+        }
+        System.out.println(failure == null ? positions + " positions checked, no difference" : failure);
+        System.exit(failure == null ? 0 : 2);
+    }
+
+    /**
+     * Null if the keys of the position with each player to move behave, a description of the first problem otherwise.
+     */
+    static String check(long own, long opponent, long alive) {
+        Symmetry.Key player0 = Symmetry.canonicalize(own, opponent, alive, 0, new Symmetry.Key());
+        Symmetry.Key player1 = Symmetry.canonicalize(own, opponent, alive, 1, new Symmetry.Key());
+        String position = String.format("own %016x, opponent %016x, alive %016x", own, opponent, alive);
+        if(player0.equals(player1) || player0.hash() == player1.hash()) {
+            return "Same key with either player to move: " + position;
+        }
+        if(!player0.equalsIgnoringPlayer(player1) || player0.hashIgnoringPlayer() != player1.hashIgnoringPlayer()) {
+            return "Different positions ignoring the player to move: " + position;
+        }
+        for(int symmetry=0; symmetry<Symmetry.COUNT; symmetry++) {
+            Symmetry.Key transformed = Symmetry.canonicalize(Symmetry.apply(symmetry, own), Symmetry.apply(symmetry, opponent),
+                    Symmetry.apply(symmetry, alive), 0, new Symmetry.Key());
+            if(!transformed.equals(player0) || transformed.hash() != player0.hash()) {
+                return "Symmetry " + symmetry + " changes the key: " + position;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,22 @@
+import com.codingame.game.Tablebase;
+
+import java.nio.file.Paths;
+
+/**
+ * Writes the endgame tablebase of every position with up to the given number of pawns
+ * on live areas up to the given size, see Tablebase.
+ */
+public class TablebaseGenerator {
+    public static void main(String[] args) throws Exception {
+        if(args.length < 4) {
+            System.err.println("Usage: TablebaseGenerator <max width> <max height> <max pawns> <tablebase file>");
+            System.exit(1);
+        }
+        long start = System.nanoTime();
+        long[] outcomes = Tablebase.generate(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+                Integer.parseInt(args[2]), Paths.get(args[3]));
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("%d wins, %d losses, %d draws for the player to move, solved in %.1fs",
+                outcomes[0], outcomes[1], outcomes[2], seconds));
+    }
+}
@@ -0,0 +1,516 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Plays every pair of agents on a range of seeds with TournamentWorker processes, spawned locally
+ * or started on other machines, and appends one line per game to the results file as results come:
+ * agent 0, agent 1, seed, score of each player and turn count.
+ *
+ * The seeds of each pair are split into shards handed to workers when they ask for work. Once no
+ * shard is left, a worker asking for work takes the second half of the seeds not played yet of the
+ * largest shard in progress, and its owner is told to stop before them. The seeds of a worker
+ * disconnecting before the end of its shard go back to the queue, so every game is played once.
+ *
+ * The results file is also the checkpoint of the tournament: a coordinator started again with the
+ * same file only plays the games of the seed range without a line yet, and counts the others in the
+ * standings. Each line is written as soon as its game ends and synced to disk in batches, so a crash
+ * of the machine loses at most the last second of results, which are played again on restart.
+ *
+ * Workers talk to the coordinator with one text line per message:
+ * HELLO threads, NEXT, RESULT shard seed score0 score1 turns and DONE shard from the workers,
+ * SHARD shard agent0 agent1 first last, LIMIT shard last and EXIT from the coordinator.
+ */
+public class TournamentCoordinator {
+    private static final int DEFAULT_SHARD_SIZE = 50;
+
+    private final Deque<Shard> pending = new ArrayDeque<>();
+    private final Map<Integer, Shard> active = new HashMap<>();
+    // Wins of agent 0, wins of agent 1 and ties for each pair
+    private final Map<String, int[]> standings = new LinkedHashMap<>();
+    private final ResultsLog results;
+    private final long totalGames;
+    private long games;
+    private long resumedGames;
+    private int nextShardId;
+
+    TournamentCoordinator(List<String> agents, long firstSeed, long lastSeed, int shardSize, ResultsLog results) throws IOException {
+        this.results = results;
+        List<String[]> pairs = new ArrayList<>();
+        if(agents.size() == 1) {
+            pairs.add(new String[] {agents.get(0), agents.get(0)});
+        }
+        for(String agent0 : agents) {
+            for(String agent1 : agents) {
+                if(!agent0.equals(agent1)) {
+                    pairs.add(new String[] {agent0, agent1});
+                }
+            }
+        }
+        // Seeds with a result in the file, from firstSeed, for each pair
+        Map<String, BitSet> played = new HashMap<>();
+        for(String[] pair : pairs) {
+            standings.put(pair[0] + " " + pair[1], new int[3]);
+            played.put(pair[0] + " " + pair[1], new BitSet());
+        }
+        results.read(line -> {
+            String[] fields = line.split(" ");
+            long seed;
+            int score0;
+            int score1;
+            try {
+                if(fields.length != 6) {
+                    throw new NumberFormatException(fields.length + " fields");
+                }
+                seed = Long.parseLong(fields[2]);
+                score0 = Integer.parseInt(fields[3]);
+                score1 = Integer.parseInt(fields[4]);
+            } catch (NumberFormatException e) {
+                System.err.println("Skipping malformed result: " + line);
+                return;
+            }
+            BitSet seeds = played.get(fields[0] + " " + fields[1]);
+            // Games of other pairs or seeds are left in the file but not counted
+            if(seeds == null || seed < firstSeed || seed > lastSeed || seeds.get((int) (seed - firstSeed))) {
+                return;
+            }
+            seeds.set((int) (seed - firstSeed));
+            score(fields[0] + " " + fields[1], score0, score1);
+            resumedGames++;
+        });
+
+        int count = (int) (lastSeed - firstSeed + 1);
+        for(String[] pair : pairs) {
+            BitSet seeds = played.get(pair[0] + " " + pair[1]);
+            int from = seeds.nextClearBit(0);
+            while(from < count) {
+                int to = seeds.nextSetBit(from);
+                if(to < 0 || to > count) {
+                    to = count;
+                }
+                for(int first=from; first<to; first+=shardSize) {
+                    pending.add(new Shard(nextShardId++, pair[0], pair[1], firstSeed + first, firstSeed + Math.min(to, first + shardSize) - 1));
+                }
+                from = seeds.nextClearBit(to);
+            }
+        }
+        totalGames = pairs.size() * (long) count - resumedGames;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if(args.length < 4) {
+            System.err.println("Usage: TournamentCoordinator <first seed> <last seed> <agent classes, comma separated> <results file> [local workers] [port] [shard size]");
+            System.exit(1);
+        }
+        long firstSeed = Long.parseLong(args[0]);
+        long lastSeed = Long.parseLong(args[1]);
+        List<String> agents = new ArrayList<>();
+        for(String agent : args[2].split(",")) {
+            agents.add(agent.trim());
+        }
+        int localWorkers = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+        int port = args.length > 5 ? Integer.parseInt(args[5]) : 0;
+        int shardSize = args.length > 6 ? Integer.parseInt(args[6]) : DEFAULT_SHARD_SIZE;
+
+        long start = System.nanoTime();
+        TournamentCoordinator coordinator;
+        try (ResultsLog results = ResultsLog.open(Paths.get(args[3]));
+             ServerSocket server = new ServerSocket(port)) {
+            coordinator = new TournamentCoordinator(agents, firstSeed, lastSeed, shardSize, results);
+            if(coordinator.resumedGames > 0) {
+                System.out.println("Resuming after " + coordinator.resumedGames + " games, " + coordinator.totalGames + " left");
+            }
+            System.out.println("Waiting for workers on port " + server.getLocalPort());
+            Thread acceptor = new Thread(() -> coordinator.accept(server), "coordinator");
+            acceptor.setDaemon(true);
+            acceptor.start();
+            List<Process> workers = spawnLocalWorkers(coordinator.totalGames > 0 ? localWorkers : 0, server.getLocalPort());
+            coordinator.awaitCompletion();
+            for(Process worker : workers) {
+                worker.waitFor();
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("%d games in %.1fs (%.1f games/s)",
+                coordinator.games, seconds, coordinator.games / seconds));
+        for(Map.Entry<String, int[]> standing : coordinator.standings.entrySet()) {
+            int[] score = standing.getValue();
+            System.out.println(String.format("%s: %d - %d, %d ties", standing.getKey(), score[0], score[1], score[2]));
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Workers on this machine, with the coordinator's JVM options and classpath,
+     * sharing the processors evenly.
+     */
+    private static List<Process> spawnLocalWorkers(int count, int port) throws IOException {
+        List<Process> workers = new ArrayList<>();
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / Math.max(1, count));
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        for(int i=0; i<count; i++) {
+            List<String> command = new ArrayList<>();
+            command.add(java);
+            command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(TournamentWorker.class.getName());
+            command.add("localhost");
+            command.add(Integer.toString(port));
+            command.add(Integer.toString(threads));
+            workers.add(new ProcessBuilder(command).inheritIO().start());
+        }
+        return workers;
+    }
+
+    private void accept(ServerSocket server) {
+        while(!server.isClosed()) {
+            try {
+                Connection connection = new Connection(server.accept());
+                Thread thread = new Thread(connection, "worker " + connection.socket.getRemoteSocketAddress());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                // Server closed at the end of the tournament
+            }
+        }
+    }
+
+    synchronized void awaitCompletion() throws InterruptedException {
+        while(games < totalGames) {
+            wait();
+        }
+    }
+
+    /**
+     * Next shard for the worker, waiting while other workers may still give some back, null once all games are played.
+     */
+    synchronized Shard takeWork(Connection connection) throws InterruptedException {
+        while(true) {
+            Shard shard = pending.poll();
+            if(shard == null) {
+                shard = steal();
+            }
+            if(shard != null) {
+                shard.owner = connection;
+                active.put(shard.id, shard);
+                return shard;
+            }
+            if(active.isEmpty()) {
+                return null;
+            }
+            wait();
+        }
+    }
+
+    /**
+     * Splits the shard in progress with the most seeds not started yet, as far as the coordinator knows:
+     * seeds after the last result, besides the ones its owner plays at once. Its owner is told by
+     * the new owner's connection, outside of the coordinator lock, so that a slow peer stalls no one else.
+     * Results it sends meanwhile for the seeds taken are dropped.
+     */
+    private Shard steal() {
+        Shard largest = null;
+        long largestRemaining = 0;
+        for(Shard shard : active.values()) {
+            long remaining = shard.last - shard.nextSeed() + 1 - shard.owner.threads;
+            if(remaining > largestRemaining) {
+                largest = shard;
+                largestRemaining = remaining;
+            }
+        }
+        if(largest == null || largestRemaining < 2) {
+            return null;
+        }
+        long newLast = largest.last - largestRemaining / 2;
+        Shard stolen = new Shard(nextShardId++, largest.agent0, largest.agent1, newLast + 1, largest.last);
+        largest.last = newLast;
+        stolen.splitFrom = largest;
+        stolen.splitOwner = largest.owner;
+        return stolen;
+    }
+
+    synchronized void record(int shardId, long seed, int score0, int score1, int turns) {
+        Shard shard = active.get(shardId);
+        // Results of seeds given to another worker meanwhile are dropped
+        if(shard == null || seed < shard.first || seed > shard.last || shard.reported.get((int) (seed - shard.first))) {
+            return;
+        }
+        try {
+            results.append(shard.agent0 + " " + shard.agent1 + " " + seed + " " + score0 + " " + score1 + " " + turns);
+        } catch (IOException e) {
+            // Without its result the game would be missing on restart, so the tournament cannot go on
+            System.err.println("Cannot write results: " + e);
+            System.exit(1);
+        }
+        shard.reported.set((int) (seed - shard.first));
+        score(shard.agent0 + " " + shard.agent1, score0, score1);
+        games++;
+        if(games == totalGames) {
+            notifyAll();
+        }
+    }
+
+    private void score(String pair, int score0, int score1) {
+        int[] standing = standings.get(pair);
+        standing[score0 > score1 ? 0 : score1 > score0 ? 1 : 2]++;
+    }
+
+    synchronized void finish(int shardId) {
+        Shard shard = active.remove(shardId);
+        if(shard != null) {
+            requeue(shard);
+        }
+        notifyAll();
+    }
+
+    synchronized void lost(Connection connection) {
+        List<Shard> owned = new ArrayList<>();
+        for(Shard shard : active.values()) {
+            if(shard.owner == connection) {
+                owned.add(shard);
+            }
+        }
+        for(Shard shard : owned) {
+            active.remove(shard.id);
+            requeue(shard);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Puts the seeds of the shard without a result back in the queue.
+     */
+    private void requeue(Shard shard) {
+        int count = (int) (shard.last - shard.first + 1);
+        int from = shard.reported.nextClearBit(0);
+        while(from < count) {
+            int to = shard.reported.nextSetBit(from);
+            if(to < 0 || to > count) {
+                to = count;
+            }
+            pending.add(new Shard(nextShardId++, shard.agent0, shard.agent1, shard.first + from, shard.first + to - 1));
+            from = shard.reported.nextClearBit(to);
+        }
+    }
+
+    /**
+     * The results file, written one line per game as results come. Writes reach the operating system at once,
+     * so only a crash of the machine can lose them, and they are forced to disk every SYNC_LINES lines,
+     * and at least every SYNC_MILLIS while some are not.
+     */
+    static final class ResultsLog implements Closeable {
+        private static final int SYNC_LINES = 256;
+        private static final long SYNC_MILLIS = 1000;
+
+        private final Path path;
+        private final FileChannel channel;
+        private int unsyncedLines;
+        private boolean closed;
+
+        private ResultsLog(Path path, FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+        }
+
+        /**
+         * Opens or creates the file, and cuts a last line left incomplete by a crash.
+         */
+        static ResultsLog open(Path path) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            // Lines are short, so the last one is searched for a byte at a time
+            long end = channel.size();
+            ByteBuffer last = ByteBuffer.allocate(1);
+            while(end > 0) {
+                last.clear();
+                channel.read(last, end - 1);
+                if(last.get(0) == '\n') {
+                    break;
+                }
+                end--;
+            }
+            if(end < channel.size()) {
+                System.err.println("Cutting an incomplete last result of " + (channel.size() - end) + " bytes");
+                channel.truncate(end);
+                channel.force(false);
+            }
+            channel.position(end);
+
+            ResultsLog log = new ResultsLog(path, channel);
+            Thread syncer = new Thread(log::syncPeriodically, "results sync");
+            syncer.setDaemon(true);
+            syncer.start();
+            return log;
+        }
+
+        /**
+         * Reads back every line of the file, before any append.
+         */
+        void read(Consumer<String> consumer) throws IOException {
+            try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                while((line = in.readLine()) != null) {
+                    if(!line.isEmpty()) {
+                        consumer.accept(line);
+                    }
+                }
+            }
+        }
+
+        synchronized void append(String line) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+            while(buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if(++unsyncedLines >= SYNC_LINES) {
+                sync();
+            }
+        }
+
+        private synchronized void sync() throws IOException {
+            if(unsyncedLines > 0 && !closed) {
+                channel.force(false);
+                unsyncedLines = 0;
+            }
+        }
+
+        private void syncPeriodically() {
+            try {
+                while(true) {
+                    Thread.sleep(SYNC_MILLIS);
+                    sync();
+                }
+            } catch (InterruptedException | IOException e) {
+                System.err.println("Results no longer synced: " + e);
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            sync();
+            closed = true;
+            channel.close();
+        }
+    }
+
+    /**
+     * Seeds first to last of a pair of agents.
+     */
+    static final class Shard {
+        final int id;
+        final String agent0;
+        final String agent1;
+        final long first;
+        long last;
+        // Seeds with a result, from first
+        final BitSet reported = new BitSet();
+        Connection owner;
+        // Shard this one was split from and its owner, to send a LIMIT to
+        Shard splitFrom;
+        Connection splitOwner;
+
+        Shard(int id, String agent0, String agent1, long first, long last) {
+            this.id = id;
+            this.agent0 = agent0;
+            this.agent1 = agent1;
+            this.first = first;
+            this.last = last;
+        }
+
+        /**
+         * Seed after the last result, as workers play seeds in order.
+         */
+        long nextSeed() {
+            return first + reported.length();
+        }
+    }
+
+    /**
+     * A worker, served on its own thread.
+     */
+    final class Connection implements Runnable {
+        final Socket socket;
+        private final PrintWriter out;
+        int threads = 1;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        }
+
+        synchronized void send(String line) {
+            out.println(line);
+            out.flush();
+        }
+
+        @Override
+        public void run() {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while((line = in.readLine()) != null) {
+                    String[] message = line.split(" ");
+                    switch(message[0]) {
+                        case "HELLO":
+                            threads = Integer.parseInt(message[1]);
+                            break;
+                        case "NEXT":
+                            Shard shard = takeWork(this);
+                            if(shard == null) {
+                                send("EXIT");
+                                return;
+                            }
+                            if(shard.splitFrom != null) {
+                                shard.splitOwner.send("LIMIT " + shard.splitFrom.id + " " + (shard.first - 1));
+                            }
+                            send("SHARD " + shard.id + " " + shard.agent0 + " " + shard.agent1 + " " + shard.first + " " + shard.last);
+                            break;
+                        case "RESULT":
+                            record(Integer.parseInt(message[1]), Long.parseLong(message[2]), Integer.parseInt(message[3]),
+                                    Integer.parseInt(message[4]), Integer.parseInt(message[5]));
+                            break;
+                        case "DONE":
+                            finish(Integer.parseInt(message[1]));
+                            break;
+                        default:
+                            throw new IOException("Unknown message " + line);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Lost worker " + socket.getRemoteSocketAddress() + ": " + e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                lost(this);
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // Already closed
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+import com.codingame.gameengine.runner.dto.GameResult;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Plays the shards of a TournamentCoordinator headless, with a MatchExecutor, until there is none left.
+ * Seeds are played in order, as many at once as the worker has threads, and each result is sent
+ * as soon as its batch ends. A LIMIT message from the coordinator, when another worker took the
+ * end of the shard, is checked before each batch.
+ */
+public class TournamentWorker {
+    private final PrintWriter out;
+    // SHARD and EXIT messages, in order
+    private final BlockingQueue<String[]> assignments = new LinkedBlockingQueue<>();
+    private volatile int currentShard = -1;
+    private volatile long limit;
+    // Limits of shards not received yet: the coordinator may send a LIMIT before the SHARD it is about
+    private final Map<Integer, Long> earlyLimits = new HashMap<>();
+
+    private TournamentWorker(Socket socket) throws IOException {
+        out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        Thread reader = new Thread(() -> read(in), "coordinator");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if(args.length < 2) {
+            System.err.println("Usage: TournamentWorker <coordinator host> <port> [threads]");
+            System.exit(1);
+        }
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        Properties gameParameters = new Properties();
+        gameParameters.setProperty("headless", "true");
+
+        MatchExecutor matchExecutor = new MatchExecutor(threads);
+        try (Socket socket = new Socket(args[0], Integer.parseInt(args[1]))) {
+            TournamentWorker worker = new TournamentWorker(socket);
+            worker.send("HELLO " + threads);
+            Map<String, Class<?>> agents = new HashMap<>();
+            while(true) {
+                worker.send("NEXT");
+                String[] assignment = worker.assignments.take();
+                if(!assignment[0].equals("SHARD")) {
+                    break;
+                }
+                int shard = Integer.parseInt(assignment[1]);
+                Class<?> agent0 = agents.computeIfAbsent(assignment[2], TournamentWorker::loadAgent);
+                Class<?> agent1 = agents.computeIfAbsent(assignment[3], TournamentWorker::loadAgent);
+                for(long batchStart=Long.parseLong(assignment[4]); batchStart<=worker.limit; batchStart+=threads) {
+                    List<Long> seeds = new ArrayList<>();
+                    for(long seed=batchStart; seed<=worker.limit && seed<batchStart+threads; seed++) {
+                        seeds.add(seed);
+                    }
+                    List<GameResult> batch = matchExecutor.run(seeds, agent0, agent1, gameParameters);
+                    for(int i=0; i<seeds.size(); i++) {
+                        GameResult result = batch.get(i);
+                        worker.send("RESULT " + shard + " " + seeds.get(i) + " " + result.scores.get(0) + " "
+                                + result.scores.get(1) + " " + HeadlessRunner.turns(result));
+                    }
+                }
+                worker.send("DONE " + shard);
+            }
+        } finally {
+            matchExecutor.shutdown();
+        }
+        // Agents threads never end on their own
+        System.exit(0);
+    }
+
+    private static Class<?> loadAgent(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Unknown agent class " + name, e);
+        }
+    }
+
+    private synchronized void send(String line) {
+        out.println(line);
+        out.flush();
+    }
+
+    /**
+     * Limits apply to the shard being played, so the shard and its last seed are set here,
+     * in the order messages come, rather than by the thread playing the games. A LIMIT may come
+     * before its SHARD, as they are sent by different connections, and is kept until then.
+     */
+    private void read(BufferedReader in) {
+        try {
+            String line;
+            while((line = in.readLine()) != null) {
+                String[] message = line.split(" ");
+                if(message[0].equals("LIMIT")) {
+                    int shard = Integer.parseInt(message[1]);
+                    long last = Long.parseLong(message[2]);
+                    if(shard == currentShard) {
+                        limit = Math.min(limit, last);
+                    } else {
+                        earlyLimits.merge(shard, last, Math::min);
+                    }
+                    continue;
+                }
+                if(message[0].equals("SHARD")) {
+                    int shard = Integer.parseInt(message[1]);
+                    Long earlyLimit = earlyLimits.remove(shard);
+                    long last = Long.parseLong(message[5]);
+                    limit = earlyLimit == null ? last : Math.min(last, earlyLimit);
+                    currentShard = shard;
+                }
+                assignments.add(message);
+                if(message[0].equals("EXIT")) {
+                    // Nothing follows, and the socket is closed once the main loop ends
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Lost coordinator: " + e);
+        }
+        assignments.add(new String[] {"EXIT"});
+    }
+}
@@ -0,0 +1,254 @@
+package com.codingame.gameengine.runner;
+
+import com.codingame.game.BandasState;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Agent running a bot instance on a thread of the match JVM. Unlike agents added by class,
+ * the bot class is not reloaded for every game, so its code stays compiled from one game to the
+ * next, and its thread ends with the game. It talks to the runner through pipes like the other
+ * agents, so the runner applies the same time limits and the referee sees the same timeouts.
+ *
+ * Bots run on a virtual thread when the runtime has them, on a daemon thread otherwise.
+ * This class lives in the runner's package to extend its Agent class.
+ */
+public class InProcessAgent extends Agent {
+    // Same pipe sizes as the runner's Java agents
+    private static final int PIPE_SIZE = 100_000;
+    // Thread.ofVirtual() and Thread.Builder.start(Runnable), from Java 21
+    private static final Method OF_VIRTUAL = findMethod("java.lang.Thread", "ofVirtual");
+    private static final Method START_VIRTUAL = findMethod("java.lang.Thread$Builder", "start", Runnable.class);
+
+    /**
+     * Bot reading its inputs and writing its outputs as it would on stdin, stdout and stderr.
+     */
+    public interface StreamBot {
+        void run(InputStream in, PrintStream out, PrintStream err) throws Exception;
+    }
+
+    /**
+     * Bot answering each turn's board with a direction, with the default input protocol.
+     */
+    public interface Bot {
+        String play(State state);
+    }
+
+    /**
+     * Board of the current turn, as the player reads it.
+     */
+    public static final class State {
+        private final int playerId;
+        private final int height;
+        private final int width;
+        private final char[] cells;
+        private int turn;
+        private PrintStream err;
+
+        State(int playerId, int height, int width) {
+            this.playerId = playerId;
+            this.height = height;
+            this.width = width;
+            this.cells = new char[height * width];
+        }
+
+        public int getPlayerId() {
+            return playerId;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        /**
+         * Game turn, counting both players' moves from 0.
+         */
+        public int getTurn() {
+            return turn;
+        }
+
+        /**
+         * Debug output, shown by the runner as the player's stderr.
+         */
+        public PrintStream getErr() {
+            return err;
+        }
+
+        /**
+         * 0 or 1 for a pawn, BandasState.EMPTY or BandasState.DEAD.
+         */
+        public int getCell(int y, int x) {
+            char cell = cells[y * width + x];
+            return cell == '0' ? 0 : cell == '1' ? 1 : cell == 'x' ? BandasState.DEAD : BandasState.EMPTY;
+        }
+
+        /**
+         * The board as a BandasState, for 8x8 boards only.
+         */
+        public BandasState toBandasState() {
+            long player0 = 0;
+            long player1 = 0;
+            long alive = 0;
+            for(int y=0; y<height; y++) {
+                for(int x=0; x<width; x++) {
+                    long bit = BandasState.bit(y, x);
+                    int cell = getCell(y, x);
+                    if(cell == 0) {
+                        player0 |= bit;
+                    } else if(cell == 1) {
+                        player1 |= bit;
+                    }
+                    if(cell != BandasState.DEAD) {
+                        alive |= bit;
+                    }
+                }
+            }
+            return BandasState.of(player0, player1, alive);
+        }
+    }
+
+    private final StreamBot bot;
+    private final PipedInputStream agentStdin = new PipedInputStream(PIPE_SIZE);
+    private final PipedOutputStream agentStdout = new PipedOutputStream();
+    private final PipedOutputStream agentStderr = new PipedOutputStream();
+    private final PrintStream err;
+    private final OutputStream processStdin;
+    private final InputStream processStdout;
+    private final InputStream processStderr;
+    private Thread thread;
+
+    public InProcessAgent(StreamBot bot) {
+        this.bot = bot;
+        try {
+            processStdin = new PipedOutputStream(agentStdin);
+            processStdout = new PipedInputStream(agentStdout, PIPE_SIZE);
+            processStderr = new PipedInputStream(agentStderr, PIPE_SIZE);
+            err = new PrintStream(agentStderr, true, "UTF-8");
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot initialize in-process agent", e);
+        }
+    }
+
+    public InProcessAgent(Bot bot) {
+        this(stream(bot));
+    }
+
+    /**
+     * Adds the agent to the runner, as addAgent does for classes and commands.
+     */
+    public static void addTo(MultiplayerGameRunner gameRunner, InProcessAgent agent, String nickname) {
+        try {
+            Method addAgent = MultiplayerGameRunner.class.getDeclaredMethod("addAgent", Agent.class, String.class, String.class);
+            addAgent.setAccessible(true);
+            addAgent.invoke(gameRunner, agent, nickname, null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot add an in-process agent to this runner version", e);
+        }
+    }
+
+    /**
+     * Reads the default protocol, calling the bot once per turn.
+     */
+    static StreamBot stream(Bot bot) {
+        return (in, out, err) -> {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            int playerId = Integer.parseInt(reader.readLine().trim());
+            int height = Integer.parseInt(reader.readLine().trim());
+            int width = Integer.parseInt(reader.readLine().trim());
+            State state = new State(playerId, height, width);
+            state.err = err;
+            for(int turn=playerId; ; turn+=2) {
+                for(int y=0; y<height; y++) {
+                    String line = reader.readLine();
+                    if(line == null) {
+                        return;
+                    }
+                    for(int x=0; x<width; x++) {
+                        state.cells[y * width + x] = line.charAt(2 * x);
+                    }
+                }
+                state.turn = turn;
+                out.println(bot.play(state));
+                out.flush();
+            }
+        };
+    }
+
+    @Override
+    protected OutputStream getInputStream() {
+        return processStdin;
+    }
+
+    @Override
+    protected InputStream getOutputStream() {
+        return processStdout;
+    }
+
+    @Override
+    protected InputStream getErrorStream() {
+        return processStderr;
+    }
+
+    @Override
+    protected void runInputOutput() throws Exception {
+        Runnable run = () -> {
+            try (PrintStream out = new PrintStream(agentStdout, false, "UTF-8")) {
+                bot.run(agentStdin, out, err);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                // The runner sees a bot which stopped answering, with the stack trace on its stderr,
+                // as with a crashed process
+                e.printStackTrace(err);
+            }
+        };
+        thread = OF_VIRTUAL != null && START_VIRTUAL != null ? startVirtual(run) : new Thread(run, "in-process agent");
+        if(thread.getState() == Thread.State.NEW) {
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if(thread != null) {
+            thread.interrupt();
+        }
+        try {
+            // Wakes up a bot waiting for inputs, and fails its writes to stderr rather than
+            // leaving them waiting for the runner to read
+            processStdin.close();
+            processStderr.close();
+        } catch (IOException e) {
+            // Nothing left to do
+        }
+    }
+
+    /**
+     * Looked up by reflection as this code targets Java 8, null when the runtime does not have it.
+     */
+    private static Method findMethod(String className, String name, Class<?>... parameterTypes) {
+        try {
+            return Class.forName(className).getMethod(name, parameterTypes);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static Thread startVirtual(Runnable run) throws ReflectiveOperationException {
+        return (Thread) START_VIRTUAL.invoke(OF_VIRTUAL.invoke(null), run);
+    }
+}